@@ -0,0 +1,256 @@
+package planner;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * Keeps, for every venue of a VenueTable, the largest event size that the
+ * venue could host without pushing any corridor over its capacity, given the
+ * traffic currently on the corridors.
+ * </p>
+ *
+ * <p>
+ * The current traffic is changed one venue at a time with addTraffic. Only
+ * the venues that share a corridor with the changed venue (found through a
+ * CorridorIndex) have their admissible size recomputed, so asking whether a
+ * venue can safely host an event of a given size is a single comparison.
+ * </p>
+ */
+public class AdmissionIndex {
+
+	// the venues whose admissible sizes are kept
+	private final VenueTable table;
+	// the venues on each corridor; built from the same venues as table
+	private final CorridorIndex corridors;
+	// capacity of each corridor, by corridor id
+	private final int[] corridorCaps;
+	// current traffic on each corridor, by corridor id
+	private final int[] loads;
+	// admissible event size of each row of table
+	private final int[] admissible;
+	// visit stamp of each row, to recompute each row once per change
+	private final int[] visited;
+	// current visit stamp
+	private int stamp;
+	/*
+	 * Invariant: loads.length == corridorCaps.length && admissible.length ==
+	 * visited.length == table.size() && for each row r, admissible[r] ==
+	 * admissibleSize(r) && 0 <= admissible[r] <= table.capacity(r)
+	 */
+
+	/**
+	 * Creates the index for a set of venues, with no traffic on any corridor.
+	 *
+	 * @param table
+	 *            the venues
+	 * @param corridors
+	 *            the venues on each corridor, built from the same list of
+	 *            venues as table
+	 * @throws NullPointerException
+	 *             if table or corridors are null
+	 */
+	public AdmissionIndex(VenueTable table, CorridorIndex corridors) {
+		this.table = table;
+		this.corridors = corridors;
+		this.corridorCaps = new int[CorridorPool.size()];
+		for (int id = 0; id < corridorCaps.length; id++) {
+			corridorCaps[id] = CorridorPool.get(id).getCapacity();
+		}
+		this.loads = new int[corridorCaps.length];
+		this.admissible = new int[table.size()];
+		this.visited = new int[table.size()];
+		for (int row = 0; row < admissible.length; row++) {
+			admissible[row] = admissibleSize(row);
+		}
+	}
+
+	/**
+	 * Creates the index for a new set of venues, keeping the traffic that is
+	 * currently on each corridor according to other. This is used when the
+	 * venues are reloaded while events are allocated.
+	 *
+	 * @param table
+	 *            the venues
+	 * @param corridors
+	 *            the venues on each corridor, built from the same list of
+	 *            venues as table
+	 * @param other
+	 *            the index whose corridor traffic is kept
+	 * @throws NullPointerException
+	 *             if table, corridors or other are null
+	 */
+	public AdmissionIndex(VenueTable table, CorridorIndex corridors,
+			AdmissionIndex other) {
+		this.table = table;
+		this.corridors = corridors;
+		this.corridorCaps = new int[CorridorPool.size()];
+		for (int id = 0; id < corridorCaps.length; id++) {
+			corridorCaps[id] = CorridorPool.get(id).getCapacity();
+		}
+		// corridors interned since other was created have no traffic yet
+		this.loads = new int[corridorCaps.length];
+		System.arraycopy(other.loads, 0, loads, 0, other.loads.length);
+		this.admissible = new int[table.size()];
+		this.visited = new int[table.size()];
+		for (int row = 0; row < admissible.length; row++) {
+			admissible[row] = admissibleSize(row);
+		}
+	}
+
+	/**
+	 * Creates a copy of other, sharing its (immutable) venue table and
+	 * corridor index.
+	 *
+	 * @param other
+	 *            the index to copy
+	 */
+	public AdmissionIndex(AdmissionIndex other) {
+		this.table = other.table;
+		this.corridors = other.corridors;
+		this.corridorCaps = other.corridorCaps;
+		this.loads = other.loads.clone();
+		this.admissible = other.admissible.clone();
+		this.visited = new int[other.visited.length];
+	}
+
+	/**
+	 * Returns the largest size of event the given venue could currently host
+	 * without the traffic on any corridor exceeding the corridor's capacity.
+	 *
+	 * @param venue
+	 *            a venue of the table
+	 * @return the admissible event size for venue, or 0 if it cannot host any
+	 *         event safely
+	 * @throws IllegalArgumentException
+	 *             if venue is not in the table
+	 */
+	public int getAdmissibleSize(Venue venue) {
+		return admissible[row(venue)];
+	}
+
+	/**
+	 * Returns true if the given venue can currently host an event of the
+	 * given size without the traffic on any corridor exceeding the corridor's
+	 * capacity.
+	 *
+	 * @param venue
+	 *            a venue of the table
+	 * @param size
+	 *            the size of the event
+	 * @return true if the event can be hosted safely, and false otherwise
+	 * @throws IllegalArgumentException
+	 *             if venue is not in the table
+	 */
+	public boolean canHost(Venue venue, int size) {
+		return size <= admissible[row(venue)];
+	}
+
+	/**
+	 * Returns the current traffic on the corridor with the given id.
+	 *
+	 * @param corridorId
+	 *            the id of an interned corridor
+	 * @return the traffic on the corridor
+	 */
+	public int getLoad(int corridorId) {
+		return corridorId < loads.length ? loads[corridorId] : 0;
+	}
+
+	/**
+	 * Adds (sign 1) or removes (sign -1) the traffic generated by an event of
+	 * the given size at the given venue, and updates the admissible sizes of
+	 * the venues that share a corridor with it.
+	 *
+	 * @param venue
+	 *            a venue of the table
+	 * @param size
+	 *            the size of the event, at most the venue's capacity
+	 * @param sign
+	 *            1 to add the event's traffic, -1 to remove it
+	 * @throws IllegalArgumentException
+	 *             if venue is not in the table
+	 */
+	public void addTraffic(Venue venue, int size, int sign) {
+		int row = row(venue);
+		table.addTraffic(row, size, sign, loads);
+		stamp++;
+		for (int k = table.start(row); k < table.end(row); k++) {
+			int id = table.corridorId(k);
+			for (int j = corridors.start(id); j < corridors.end(id); j++) {
+				int other = corridors.venueRow(j);
+				if (visited[other] != stamp) {
+					visited[other] = stamp;
+					admissible[other] = admissibleSize(other);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the traffic generated by each of the given allocations of events
+	 * to venues, and then updates the admissible sizes of the venues that
+	 * share a corridor with any of them. Each such venue is updated once,
+	 * rather than once per allocation as by addTraffic.
+	 *
+	 * @param allocations
+	 *            allocations of events to venues of the table, each event's
+	 *            size at most its venue's capacity
+	 * @throws IllegalArgumentException
+	 *             if a venue is not in the table
+	 */
+	public void addTraffic(Map<Event, Venue> allocations) {
+		int[] rows = new int[allocations.size()];
+		int n = 0;
+		for (Map.Entry<Event, Venue> allocation : allocations.entrySet()) {
+			rows[n] = row(allocation.getValue());
+			table.addTraffic(rows[n], allocation.getKey().getSize(), 1, loads);
+			n++;
+		}
+		stamp++;
+		for (int row : rows) {
+			for (int k = table.start(row); k < table.end(row); k++) {
+				int id = table.corridorId(k);
+				for (int j = corridors.start(id); j < corridors.end(id); j++) {
+					int other = corridors.venueRow(j);
+					if (visited[other] != stamp) {
+						visited[other] = stamp;
+						admissible[other] = admissibleSize(other);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the admissible event size of a row from the current loads.
+	 * For a corridor with residual capacity R, an event of size s adds
+	 * (s * X) / C traffic, which is at most R exactly when
+	 * s &lt;= ((R + 1) * C - 1) / X.
+	 */
+	private int admissibleSize(int row) {
+		long capacity = table.capacity(row);
+		long best = capacity;
+		for (int k = table.start(row); k < table.end(row); k++) {
+			int id = table.corridorId(k);
+			long residual = corridorCaps[id] - loads[id];
+			if (residual < 0) {
+				// corridor already over capacity
+				return 0;
+			}
+			best = Math.min(best,
+					((residual + 1) * capacity - 1) / table.traffic(k));
+		}
+		return (int) best;
+	}
+
+	/**
+	 * Returns the row of venue in the table, or throws if it is not there.
+	 */
+	private int row(Venue venue) {
+		int row = table.rowOf(venue);
+		if (row < 0) {
+			throw new IllegalArgumentException("venue is not in the table");
+		}
+		return row;
+	}
+}
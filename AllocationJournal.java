@@ -0,0 +1,509 @@
+package planner;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * <p>
+ * Persists the allocations of events to venues as an append-only journal of
+ * changes, so that they can be restored when the program is started again.
+ * </p>
+ *
+ * <p>
+ * Each allocation or removal of an allocation is appended to a
+ * memory-mapped journal file as one record: its length, a checksum, whether
+ * the allocation was added or removed, the event's name and size and the
+ * venue's name and capacity. A record is in the file as soon as it is
+ * appended, so it survives the program crashing (though not necessarily
+ * the operating system crashing). A record that was only partly written
+ * fails its checksum and ends the journal.
+ * </p>
+ *
+ * <p>
+ * To keep the journal short, snapshot writes every current allocation to a
+ * snapshot file next to the journal (the journal's name with ".snapshot"
+ * appended), and then starts a new generation of the journal, holding only
+ * the changes made after the snapshot. Recovering the allocations reads the
+ * snapshot and replays only the journal records after it.
+ * </p>
+ *
+ * <p>
+ * Venues are recorded by name and capacity, and are matched to the venues
+ * read from the venue file when the allocations are recovered. An
+ * allocation whose venue is no longer in the venue file is not recovered.
+ * </p>
+ */
+public class AllocationJournal {
+
+	// suffix added to the journal's name to name its snapshot
+	static final String SUFFIX = ".snapshot";
+	// first four bytes of a journal: "AJNL"
+	private static final int JOURNAL_MAGIC = 0x414a4e4c;
+	// first four bytes of a snapshot: "ASNP"
+	private static final int SNAPSHOT_MAGIC = 0x41534e50;
+	// version of the journal and snapshot formats
+	private static final int VERSION = 1;
+	// bytes before the first record: magic, version, generation
+	private static final int HEADER_SIZE = 4 + 4 + 8;
+	// bytes before each record's payload: length, crc
+	private static final int RECORD_HEADER_SIZE = 4 + 4;
+	// amount by which the mapping of the journal is extended when full
+	private static final int MAP_INCREMENT = 1 << 20;
+
+	// the journal file
+	private final Path file;
+	// the snapshot file
+	private final Path snapshotFile;
+	// open channel to the journal file
+	private final FileChannel channel;
+	// the journal file, mapped from its start
+	private MappedByteBuffer map;
+	// generation of the journal; incremented by each snapshot
+	private long generation;
+	// number of records in the current generation of the journal
+	private int recordCount;
+	// the changes read by the constructor, until they are recovered
+	private List<Change> recovered;
+	/*
+	 * Invariant: HEADER_SIZE <= map.position() <= map.capacity() &&
+	 * map.position() is the end of the last record of the current
+	 * generation, and all bytes after it are zero
+	 */
+
+	/**
+	 * <p>
+	 * Opens the journal in the given file, creating it if it does not exist,
+	 * and reads the allocations recorded by it and its snapshot, to be
+	 * returned by recover.
+	 * </p>
+	 *
+	 * <p>
+	 * If the program stopped while a snapshot was being taken, the snapshot
+	 * is completed now.
+	 * </p>
+	 *
+	 * @param file
+	 *            the path of the journal file
+	 * @throws IOException
+	 *             if the journal cannot be opened or is not a journal
+	 */
+	public AllocationJournal(Path file) throws IOException {
+		this.file = file;
+		this.snapshotFile = file.resolveSibling(file.getFileName() + SUFFIX);
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		boolean created = channel.size() == 0;
+		long mapSize = Math.max(channel.size(), MAP_INCREMENT);
+		if (mapSize > Integer.MAX_VALUE) {
+			channel.close();
+			throw new IOException(file + " is too large to be a journal");
+		}
+		this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, mapSize);
+		if (created) {
+			writeHeader(0);
+		} else if (map.getInt() != JOURNAL_MAGIC || map.getInt() != VERSION) {
+			channel.close();
+			throw new IOException(file + " is not an allocation journal");
+		}
+		this.generation = map.getLong(8);
+		this.recovered = new ArrayList<Change>();
+		long snapshotGeneration = readSnapshot(recovered);
+		if (snapshotGeneration < 0) {
+			// no snapshot: the journal records every change
+			recovered.clear();
+		}
+		map.position(HEADER_SIZE);
+		if (snapshotGeneration == generation + 1) {
+			// the last snapshot was written, but the journal was not reset
+			resetJournal(snapshotGeneration, map.capacity());
+		} else {
+			if (snapshotGeneration != generation) {
+				// not the snapshot of this generation of the journal
+				recovered.clear();
+			}
+			Change change;
+			while ((change = readRecord()) != null) {
+				recovered.add(change);
+				recordCount++;
+			}
+			// clear any partly written record after the last one
+			clear(map.position(), map.capacity());
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the allocations recorded when the journal was opened, matched
+	 * to the given venues, in the order in which they were made.
+	 * </p>
+	 *
+	 * <p>
+	 * A recorded venue is matched to a venue with the same name and capacity
+	 * that is not hosting another recovered allocation. Allocations for
+	 * which there is no such venue are left out.
+	 * </p>
+	 *
+	 * @param venues
+	 *            the venues read from the venue file
+	 * @return the recovered allocations of events to venues
+	 */
+	public Map<Event, Venue> recover(List<Venue> venues) {
+		// the recorded venues with each name and capacity, in file order
+		Set<String> names = new HashSet<String>();
+		for (Change change : recovered) {
+			names.add(change.venueName);
+		}
+		Map<String, List<Venue>> byKey = new HashMap<String, List<Venue>>();
+		for (Venue venue : venues) {
+			if (!names.contains(venue.getName())) {
+				continue;
+			}
+			String key = key(venue.getName(), venue.getCapacity());
+			if (!byKey.containsKey(key)) {
+				byKey.put(key, new ArrayList<Venue>());
+			}
+			byKey.get(key).add(venue);
+		}
+		Map<Event, Venue> allocations = new LinkedHashMap<Event, Venue>();
+		Set<Venue> hosting = new HashSet<Venue>();
+		for (Change change : recovered) {
+			Event event = new Event(change.eventName, change.eventSize);
+			Venue previous = allocations.remove(event);
+			if (previous != null) {
+				hosting.remove(previous);
+			}
+			if (change.sign < 0) {
+				continue;
+			}
+			List<Venue> candidates =
+					byKey.get(key(change.venueName, change.venueCapacity));
+			if (candidates != null) {
+				for (Venue candidate : candidates) {
+					if (hosting.add(candidate)) {
+						allocations.put(event, candidate);
+						break;
+					}
+				}
+			}
+		}
+		recovered = new ArrayList<Change>();
+		return allocations;
+	}
+
+	/**
+	 * Appends a record of event being allocated to venue (sign 1), or of that
+	 * allocation being removed (sign -1).
+	 *
+	 * @param event
+	 *            the event
+	 * @param venue
+	 *            the venue hosting the event
+	 * @param sign
+	 *            1 if the allocation was added, -1 if it was removed
+	 * @throws IOException
+	 *             if the journal cannot be extended
+	 */
+	public void append(Event event, Venue venue, int sign) throws IOException {
+		byte[] payload = encode(event, venue, sign);
+		ensureRemaining(RECORD_HEADER_SIZE + payload.length + 4);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		int start = map.position();
+		map.position(start + 4);
+		map.putInt((int) crc.getValue());
+		map.put(payload);
+		// the length goes in last, so a partly written record is not read
+		map.putInt(start, payload.length);
+		recordCount++;
+	}
+
+	/**
+	 * Returns the number of records appended since the last snapshot.
+	 *
+	 * @return the number of records in the journal
+	 */
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * <p>
+	 * Writes the given allocations, which must be the result of every change
+	 * recorded so far, to the snapshot file, and starts a new, empty
+	 * generation of the journal.
+	 * </p>
+	 *
+	 * <p>
+	 * The snapshot is written to a temporary file and then moved over the
+	 * previous snapshot, so the previous snapshot and journal stay valid
+	 * until the new snapshot is complete.
+	 * </p>
+	 *
+	 * @param allocations
+	 *            the current allocations of events to venues
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 */
+	public void snapshot(Map<Event, Venue> allocations) throws IOException {
+		long next = generation + 1;
+		Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName()
+				+ ".tmp");
+		try (FileChannel out = FileChannel.open(temporary,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			CRC32 crc = new CRC32();
+			DataOutputStream data = new DataOutputStream(
+					new CheckedOutputStream(new BufferedOutputStream(
+							Channels.newOutputStream(out), 1 << 16), crc));
+			data.writeInt(SNAPSHOT_MAGIC);
+			data.writeInt(VERSION);
+			data.writeLong(next);
+			data.writeInt(allocations.size());
+			for (Map.Entry<Event, Venue> allocation : allocations.entrySet()) {
+				byte[] payload = encode(allocation.getKey(),
+						allocation.getValue(), 1);
+				data.writeInt(payload.length);
+				data.write(payload);
+			}
+			data.flush();
+			ByteBuffer trailer = ByteBuffer.allocate(4);
+			trailer.putInt((int) crc.getValue()).flip();
+			out.write(trailer);
+			out.force(true);
+		}
+		Files.move(temporary, snapshotFile,
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		resetJournal(next, map.position());
+	}
+
+	/**
+	 * Writes any records not yet written to the storage device, and closes
+	 * the journal.
+	 *
+	 * @throws IOException
+	 *             if the journal cannot be closed
+	 */
+	public void close() throws IOException {
+		map.force();
+		channel.close();
+	}
+
+	/**
+	 * Reads the snapshot file into changes, returning its generation, or -1
+	 * if there is no valid snapshot.
+	 */
+	private long readSnapshot(List<Change> changes) throws IOException {
+		if (!Files.exists(snapshotFile)) {
+			return -1;
+		}
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+		if (in.remaining() < HEADER_SIZE + 4 + 4) {
+			return -1;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(in.array(), 0, in.limit() - 4);
+		if ((int) crc.getValue() != in.getInt(in.limit() - 4)) {
+			return -1; // corrupt
+		}
+		in.limit(in.limit() - 4);
+		if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != VERSION) {
+			return -1;
+		}
+		long snapshotGeneration = in.getLong();
+		try {
+			int count = in.getInt();
+			for (int i = 0; i < count; i++) {
+				int length = in.getInt();
+				ByteBuffer payload = in.slice();
+				payload.limit(length);
+				changes.add(decode(payload));
+				in.position(in.position() + length);
+			}
+		} catch (RuntimeException e) {
+			// inconsistent despite a matching checksum
+			return -1;
+		}
+		return snapshotGeneration;
+	}
+
+	/**
+	 * Reads the record at the current position of the journal and moves
+	 * past it, or returns null (without moving) if there is no complete
+	 * record there.
+	 */
+	private Change readRecord() {
+		int start = map.position();
+		if (map.capacity() - start < RECORD_HEADER_SIZE) {
+			return null;
+		}
+		int length = map.getInt(start);
+		if (length <= 0 || length > map.capacity() - start
+				- RECORD_HEADER_SIZE) {
+			return null;
+		}
+		ByteBuffer payload = map.duplicate();
+		payload.position(start + RECORD_HEADER_SIZE);
+		payload.limit(start + RECORD_HEADER_SIZE + length);
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		if ((int) crc.getValue() != map.getInt(start + 4)) {
+			return null; // partly written
+		}
+		Change change;
+		try {
+			change = decode(payload.slice());
+		} catch (RuntimeException e) {
+			return null;
+		}
+		map.position(start + RECORD_HEADER_SIZE + length);
+		return change;
+	}
+
+	/**
+	 * Empties the journal, whose records end before the given position,
+	 * giving it the given generation. The records are cleared before the
+	 * header is rewritten, so until then the journal is still a valid
+	 * journal of its previous generation.
+	 */
+	private void resetJournal(long newGeneration, int end) {
+		clear(HEADER_SIZE, end);
+		writeHeader(newGeneration);
+		map.force();
+		map.position(HEADER_SIZE);
+		generation = newGeneration;
+		recordCount = 0;
+	}
+
+	/**
+	 * Sets the bytes of the journal from start (inclusive) to end (exclusive)
+	 * to zero.
+	 */
+	private void clear(int start, int end) {
+		ByteBuffer zeros = ByteBuffer.allocate(Math.min(end - start, 1 << 16));
+		ByteBuffer target = map.duplicate();
+		target.position(start);
+		target.limit(end);
+		while (target.hasRemaining()) {
+			zeros.clear();
+			zeros.limit(Math.min(zeros.capacity(), target.remaining()));
+			target.put(zeros);
+		}
+	}
+
+	/**
+	 * Writes the journal header for the given generation.
+	 */
+	private void writeHeader(long newGeneration) {
+		map.putInt(0, JOURNAL_MAGIC);
+		map.putInt(4, VERSION);
+		map.putLong(8, newGeneration);
+	}
+
+	/**
+	 * Extends the mapping of the journal file, if needed, so that at least
+	 * the given number of bytes can be written after the current position.
+	 */
+	private void ensureRemaining(int bytes) throws IOException {
+		if (map.remaining() >= bytes) {
+			return;
+		}
+		long size = (long) map.capacity()
+				+ Math.max(MAP_INCREMENT, bytes);
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException(file + " is full");
+		}
+		int position = map.position();
+		map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		map.position(position);
+	}
+
+	/**
+	 * Returns the payload of a record: sign, event size, event name, venue
+	 * capacity and venue name, with each name as its UTF-8 length followed
+	 * by its UTF-8 bytes.
+	 */
+	private static byte[] encode(Event event, Venue venue, int sign) {
+		byte[] eventName = event.getName().getBytes(StandardCharsets.UTF_8);
+		byte[] venueName = venue.getName().getBytes(StandardCharsets.UTF_8);
+		ByteBuffer out = ByteBuffer.allocate(1 + 4 + 4 + eventName.length
+				+ 4 + 4 + venueName.length);
+		out.put((byte) sign);
+		out.putInt(event.getSize());
+		out.putInt(eventName.length).put(eventName);
+		out.putInt(venue.getCapacity());
+		out.putInt(venueName.length).put(venueName);
+		return out.array();
+	}
+
+	/**
+	 * Reads a payload written by encode.
+	 */
+	private static Change decode(ByteBuffer in) {
+		int sign = in.get();
+		int eventSize = in.getInt();
+		String eventName = readString(in);
+		int venueCapacity = in.getInt();
+		String venueName = readString(in);
+		return new Change(sign, eventName, eventSize, venueName,
+				venueCapacity);
+	}
+
+	/**
+	 * Reads a string as its UTF-8 length followed by its UTF-8 bytes.
+	 */
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the key of a venue with the given name and capacity.
+	 */
+	private static String key(String venueName, int venueCapacity) {
+		return venueCapacity + "," + venueName;
+	}
+
+	/**
+	 * A recorded change to the allocations.
+	 */
+	private static final class Change {
+		// 1 if the allocation was added, -1 if it was removed
+		final int sign;
+		// name and size of the event
+		final String eventName;
+		final int eventSize;
+		// name and capacity of the venue
+		final String venueName;
+		final int venueCapacity;
+
+		Change(int sign, String eventName, int eventSize, String venueName,
+				int venueCapacity) {
+			this.sign = sign;
+			this.eventName = eventName;
+			this.eventSize = eventSize;
+			this.venueName = venueName;
+			this.venueCapacity = venueCapacity;
+		}
+	}
+}
@@ -0,0 +1,465 @@
+package planner.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import planner.ConcurrentAllocationModel;
+import planner.Corridor;
+import planner.Event;
+import planner.EventReader;
+import planner.FormatException;
+import planner.Traffic;
+import planner.Venue;
+import planner.VenueCatalogue;
+
+/**
+ * <p>
+ * A headless allocation service: serves a ConcurrentAllocationModel over
+ * HTTP on the local host, using the JDK's built-in HTTP server, so that other
+ * tools can allocate events without the GUI.
+ * </p>
+ *
+ * <p>
+ * Each request is handled on its own thread: a virtual thread if the Java
+ * runtime has them (Java 21 and later), and otherwise a thread from a cached
+ * pool. Responses are JSON. The endpoints are
+ * </p>
+ *
+ * <ul>
+ * <li>GET /venues?size=S&amp;free=true&amp;limit=N - up to N (default 100)
+ * venues that can host an event of size S (default 1), in file order; or
+ * only the free ones, in ascending order of capacity, if free=true</li>
+ * <li>GET /allocations - the current allocations</li>
+ * <li>POST /allocations?event=NAME&amp;size=S&amp;venue=VENUE - allocates the
+ * event to a free venue with the given name (and capacity, if capacity=C is
+ * given), if that is safe</li>
+ * <li>DELETE /allocations?event=NAME&amp;size=S - removes the allocation of
+ * the event</li>
+ * <li>GET /traffic - the traffic on every corridor with traffic</li>
+ * <li>POST /auto-allocate - allocates the events listed in the body, one
+ * "NAME,SIZE" per line (see EventReader), to free venues that can host them
+ * safely</li>
+ * </ul>
+ */
+public class AllocationServer {
+
+	// port listened on if none is given
+	private static final int DEFAULT_PORT = 8080;
+	// number of venues listed if no limit is given
+	private static final int DEFAULT_LIMIT = 100;
+	// system property turning off Nagle's algorithm in the JDK's HTTP server
+	private static final String NO_DELAY = "sun.net.httpserver.nodelay";
+
+	// the allocations served
+	private final ConcurrentAllocationModel model;
+	// the venues with each name, in table order
+	private final Map<String, List<Venue>> venuesByName;
+	// the HTTP server
+	private final HttpServer server;
+	// executor running the handlers
+	private final ExecutorService executor;
+
+	/**
+	 * <p>
+	 * Creates a server for the given model, listening on the given port of
+	 * the local host. The server is not started.
+	 * </p>
+	 *
+	 * <p>
+	 * Responses on kept-alive connections are only sent without delay if
+	 * the JVM was launched with -Dsun.net.httpserver.nodelay=true, as main
+	 * ensures; otherwise each waits for the client's delayed
+	 * acknowledgement of its headers. The constructor does not set the
+	 * property itself, as it is global to the JVM and only read once.
+	 * </p>
+	 *
+	 * @param model
+	 *            the allocations to serve
+	 * @param port
+	 *            the port to listen on, or 0 for any free port
+	 * @throws IOException
+	 *             if the server cannot listen on the port
+	 */
+	public AllocationServer(ConcurrentAllocationModel model, int port)
+			throws IOException {
+		this.model = model;
+		this.venuesByName = new HashMap<String, List<Venue>>();
+		for (Venue venue : model.getVenueTable().getVenues()) {
+			if (!venuesByName.containsKey(venue.getName())) {
+				venuesByName.put(venue.getName(), new ArrayList<Venue>());
+			}
+			venuesByName.get(venue.getName()).add(venue);
+		}
+		this.server = HttpServer.create(
+				new InetSocketAddress("localhost", port), 1024);
+		this.executor = newExecutor();
+		server.setExecutor(executor);
+		server.createContext("/venues", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, venues(exchange));
+			}
+		});
+		server.createContext("/allocations", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, allocations(exchange));
+			}
+		});
+		server.createContext("/traffic", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, traffic(exchange));
+			}
+		});
+		server.createContext("/auto-allocate", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, autoAllocate(exchange));
+			}
+		});
+	}
+
+	/**
+	 * Starts the server.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops the server, waiting up to the given number of seconds for the
+	 * requests being handled to finish.
+	 *
+	 * @param delay
+	 *            the longest time to wait, in seconds
+	 */
+	public void stop(int delay) {
+		server.stop(delay);
+		executor.shutdown();
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Runs an allocation server for the venues of a venue file until the
+	 * process is stopped. The arguments are the port (default 8080) and the
+	 * venue file (default venues.txt). Nagle's algorithm is turned off for
+	 * the server's connections unless the sun.net.httpserver.nodelay
+	 * property is given on the command line.
+	 *
+	 * @param args
+	 *            optional port and venue file name
+	 * @throws IOException
+	 *             if the venue file cannot be read or the port cannot be
+	 *             listened on
+	 * @throws FormatException
+	 *             if the venue file is invalid
+	 */
+	public static void main(String[] args) throws IOException,
+	FormatException {
+		// before the JDK's HTTP server reads its configuration, which it
+		// does only once
+		if (System.getProperty(NO_DELAY) == null) {
+			System.setProperty(NO_DELAY, "true");
+		}
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		String fileName = args.length > 1 ? args[1] : "venues.txt";
+		ConcurrentAllocationModel model =
+				new ConcurrentAllocationModel(VenueCatalogue.read(fileName));
+		AllocationServer server = new AllocationServer(model, port);
+		server.start();
+		System.out.println("Serving " + model.getVenueTable().size()
+				+ " venues on http://localhost:" + server.getPort() + "/");
+	}
+
+	/**
+	 * Handles GET /venues.
+	 */
+	private Response venues(HttpExchange exchange) {
+		if (!exchange.getRequestMethod().equals("GET")) {
+			return Response.notAllowed();
+		}
+		Map<String, String> query = query(exchange);
+		int size;
+		int limit;
+		try {
+			size = Integer.parseInt(value(query, "size", "1"));
+			limit = Integer.parseInt(value(query, "limit", "" + DEFAULT_LIMIT));
+		} catch (NumberFormatException e) {
+			return Response.error(400, "size and limit must be integers");
+		}
+		boolean freeOnly = "true".equals(query.get("free"));
+		List<Venue> venues = freeOnly ? model.getFreeVenues(size, limit)
+				: model.getVenueTable().getVenues();
+		StringBuilder json = new StringBuilder("[");
+		int count = 0;
+		for (Venue venue : venues) {
+			if (count == limit) {
+				break;
+			}
+			if (venue.getCapacity() < size) {
+				continue;
+			}
+			json.append(count++ == 0 ? "" : ",").append(venueJson(venue));
+		}
+		return Response.ok(json.append("]").toString());
+	}
+
+	/**
+	 * Handles GET, POST and DELETE /allocations.
+	 */
+	private Response allocations(HttpExchange exchange) {
+		String method = exchange.getRequestMethod();
+		if (method.equals("GET")) {
+			StringBuilder json = new StringBuilder("[");
+			for (Map.Entry<Event, Venue> allocation
+					: model.getAllocations().entrySet()) {
+				json.append(json.length() == 1 ? "" : ",").append(
+						allocationJson(allocation.getKey(),
+								allocation.getValue()));
+			}
+			return Response.ok(json.append("]").toString());
+		}
+		if (!method.equals("POST") && !method.equals("DELETE")) {
+			return Response.notAllowed();
+		}
+		Map<String, String> query = query(exchange);
+		Event event;
+		try {
+			event = new Event(query.get("event"),
+					Integer.parseInt(value(query, "size", "")));
+		} catch (RuntimeException e) {
+			// missing name, or invalid size
+			return Response.error(400, "event and size must be given");
+		}
+		if (method.equals("DELETE")) {
+			Venue venue = model.deallocate(event);
+			return venue == null ? Response.error(404, "event is not allocated")
+					: Response.ok(allocationJson(event, venue));
+		}
+		List<Venue> named = venuesByName.get(query.get("venue"));
+		if (named == null) {
+			return Response.error(404, "no such venue");
+		}
+		Venue venue = null;
+		for (Venue candidate : named) {
+			if ((query.get("capacity") == null || query.get("capacity")
+					.equals("" + candidate.getCapacity()))
+					&& (venue == null || model.isFree(candidate))) {
+				venue = candidate;
+				if (model.isFree(venue)) {
+					break;
+				}
+			}
+		}
+		if (venue == null) {
+			return Response.error(404, "no such venue");
+		}
+		try {
+			Corridor overflow = model.allocate(event, venue);
+			if (overflow != null) {
+				return Response.error(422, "allocation is unsafe, it would "
+						+ "exceed the capacity of " + overflow);
+			}
+			return new Response(201, allocationJson(event, venue));
+		} catch (IllegalArgumentException e) {
+			return Response.error(422, e.getMessage());
+		} catch (IllegalStateException e) {
+			return Response.error(409, e.getMessage());
+		}
+	}
+
+	/**
+	 * Handles GET /traffic.
+	 */
+	private Response traffic(HttpExchange exchange) {
+		if (!exchange.getRequestMethod().equals("GET")) {
+			return Response.notAllowed();
+		}
+		Traffic traffic = model.getTraffic();
+		StringBuilder json = new StringBuilder("[");
+		for (Corridor corridor : traffic.getCorridorsWithTraffic()) {
+			json.append(json.length() == 1 ? "" : ",")
+			.append("{\"corridor\":").append(quote(corridor.toString()))
+			.append(",\"traffic\":").append(traffic.getTraffic(corridor))
+			.append(",\"capacity\":").append(corridor.getCapacity())
+			.append("}");
+		}
+		return Response.ok(json.append("]").toString());
+	}
+
+	/**
+	 * Handles POST /auto-allocate.
+	 */
+	private Response autoAllocate(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("POST")) {
+			return Response.notAllowed();
+		}
+		List<Event> events;
+		try {
+			events = EventReader.read(new BufferedReader(new InputStreamReader(
+					exchange.getRequestBody(), StandardCharsets.UTF_8)));
+		} catch (FormatException e) {
+			return Response.error(400, e.getMessage());
+		}
+		StringBuilder json = new StringBuilder("[");
+		for (Map.Entry<Event, Venue> allocation
+				: model.autoAllocate(events).entrySet()) {
+			json.append(json.length() == 1 ? "" : ",").append(
+					allocationJson(allocation.getKey(), allocation.getValue()));
+		}
+		return Response.ok(json.append("]").toString());
+	}
+
+	/**
+	 * Sends a response to the exchange.
+	 */
+	private static void respond(HttpExchange exchange, Response response)
+			throws IOException {
+		byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type",
+				"application/json; charset=utf-8");
+		exchange.sendResponseHeaders(response.status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * Returns the parameters of the query string of the exchange's URI.
+	 */
+	private static Map<String, String> query(HttpExchange exchange) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query == null) {
+			return parameters;
+		}
+		for (String parameter : query.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals > 0) {
+				parameters.put(decode(parameter.substring(0, equals)),
+						decode(parameter.substring(equals + 1)));
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Returns the value of a parameter, or the default if it is not given.
+	 */
+	private static String value(Map<String, String> query, String name,
+			String defaultValue) {
+		String value = query.get(name);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * Decodes a URL-encoded query string component.
+	 */
+	private static String decode(String component) {
+		try {
+			return URLDecoder.decode(component, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e); // UTF-8 is always supported
+		}
+	}
+
+	/**
+	 * Returns the JSON object describing a venue.
+	 */
+	private String venueJson(Venue venue) {
+		return "{\"name\":" + quote(venue.getName()) + ",\"capacity\":"
+				+ venue.getCapacity() + ",\"free\":" + model.isFree(venue)
+				+ "}";
+	}
+
+	/**
+	 * Returns the JSON object describing an allocation.
+	 */
+	private static String allocationJson(Event event, Venue venue) {
+		return "{\"event\":" + quote(event.getName()) + ",\"size\":"
+				+ event.getSize() + ",\"venue\":" + quote(venue.getName())
+				+ ",\"capacity\":" + venue.getCapacity() + "}";
+	}
+
+	/**
+	 * Returns a string as a JSON string literal.
+	 */
+	private static String quote(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * Returns an executor that runs each task on a new virtual thread if
+	 * this Java runtime supports them, and otherwise on a cached thread
+	 * pool. (Found reflectively, so this compiles on Java 8.)
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * A status code and JSON body to send in response to a request.
+	 */
+	private static final class Response {
+		final int status;
+		final String body;
+
+		Response(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+
+		static Response ok(String body) {
+			return new Response(200, body);
+		}
+
+		static Response error(int status, String message) {
+			return new Response(status, "{\"error\":" + quote(message) + "}");
+		}
+
+		static Response notAllowed() {
+			return error(405, "method not allowed");
+		}
+	}
+}
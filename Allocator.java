@@ -1,8 +1,11 @@
 package planner;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -49,6 +52,70 @@ public class Allocator {
 		}
 	}
 
+	/**
+	 * <p>
+	 * Returns a safe allocation of as many of the given events as possible
+	 * to the venues in free, found greedily, given the traffic already
+	 * recorded in admission.
+	 * </p>
+	 *
+	 * <p>
+	 * Unlike allocate, which examines every possible allocation and so takes
+	 * time exponential in the number of events, this considers the events
+	 * once each, largest first, and gives each the venue with the smallest
+	 * capacity that can safely host it. It may therefore fail to allocate
+	 * events that some other allocation could have fitted; those events are
+	 * left out of the result.
+	 * </p>
+	 *
+	 * <p>
+	 * Each venue allocated is removed from free, and the traffic of its event
+	 * added to admission, so both reflect the allocation returned.
+	 * </p>
+	 *
+	 * @param events
+	 *            the events to allocate
+	 * @param table
+	 *            the table the venues of free and admission belong to
+	 * @param free
+	 *            the venues that may be allocated
+	 * @param admission
+	 *            the admissible event sizes of the venues of table, under the
+	 *            traffic already on the corridors
+	 * @return a safe allocation of some (possibly none) of the events to
+	 *         venues in free, in the order in which they were allocated
+	 * @require events != null && !events.contains(null) && events does not
+	 *          contain duplicate events && table, free and admission != null
+	 */
+	public static Map<Event, Venue> allocateGreedy(List<Event> events,
+			VenueTable table, CapacityIndex free, AdmissionIndex admission) {
+		List<Event> largestFirst = new ArrayList<Event>(events);
+		Collections.sort(largestFirst, new Comparator<Event>() {
+			@Override
+			public int compare(Event e1, Event e2) {
+				return Integer.compare(e2.getSize(), e1.getSize());
+			}
+		});
+		Map<Event, Venue> allocation = new LinkedHashMap<Event, Venue>();
+		for (Event event : largestFirst) {
+			Venue host = null;
+			// venues large enough for the event, smallest first
+			for (long key : free.keysFor(event.getSize())) {
+				Venue venue = table.getVenue(CapacityIndex.rowOf(key));
+				if (admission.canHost(venue, event.getSize())) {
+					host = venue;
+					break;
+				}
+			}
+			if (host != null) {
+				free.remove(host);
+				admission.addTraffic(host, event.getSize(), 1);
+				allocation.put(event, host);
+			}
+		}
+		return allocation;
+	}
+
 	/**
 	 * Returns the set of all possible safe allocations of events to venues.
 	 *
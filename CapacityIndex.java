@@ -0,0 +1,200 @@
+package planner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * A mutable set of venues from a VenueTable, ordered by capacity, that
+ * answers "which venues in the set can host an event of size s?" as a range
+ * query.
+ * </p>
+ *
+ * <p>
+ * Venues are ordered by ascending capacity, and venues of equal capacity by
+ * their row in the table. Adding or removing a venue takes O(log n) time, and
+ * finding the venues that can host an event takes O(log n + k) time, where k
+ * is the number of venues returned.
+ * </p>
+ */
+public class CapacityIndex {
+
+	// the table the venues in this index belong to
+	private final VenueTable table;
+	// (capacity << 32 | row) for each venue in this index
+	private final NavigableSet<Long> keys;
+	/*
+	 * Invariant: table != null && keys != null && every key belongs to a row
+	 * of table and its capacity
+	 */
+
+	/**
+	 * Creates an index containing every venue of the given table.
+	 *
+	 * @param table
+	 *            the table whose venues are indexed
+	 * @throws NullPointerException
+	 *             if table is null
+	 */
+	public CapacityIndex(VenueTable table) {
+		this.table = table;
+		this.keys = new TreeSet<Long>();
+		for (int row = 0; row < table.size(); row++) {
+			keys.add(key(row));
+		}
+	}
+
+	/**
+	 * Creates an index containing the given venues, which must all belong to
+	 * table.
+	 *
+	 * @param table
+	 *            the table the venues belong to
+	 * @param venues
+	 *            the venues initially in the index
+	 * @throws NullPointerException
+	 *             if table or venues is null
+	 * @throws IllegalArgumentException
+	 *             if a venue is not in table
+	 */
+	public CapacityIndex(VenueTable table, List<Venue> venues) {
+		this.table = table;
+		this.keys = new TreeSet<Long>();
+		for (Venue venue : venues) {
+			add(venue);
+		}
+	}
+
+	/**
+	 * Creates an index that is a copy of other.
+	 *
+	 * @param other
+	 *            the index to copy
+	 */
+	public CapacityIndex(CapacityIndex other) {
+		this.table = other.table;
+		this.keys = new TreeSet<Long>(other.keys);
+	}
+
+	/**
+	 * Adds a venue to the index.
+	 *
+	 * @param venue
+	 *            the venue to add
+	 * @return true if the venue was not already in the index
+	 * @throws IllegalArgumentException
+	 *             if venue is not in the table of this index
+	 */
+	public boolean add(Venue venue) {
+		return keys.add(key(row(venue)));
+	}
+
+	/**
+	 * Removes a venue from the index.
+	 *
+	 * @param venue
+	 *            the venue to remove
+	 * @return true if the venue was in the index
+	 */
+	public boolean remove(Venue venue) {
+		int row = table.rowOf(venue);
+		return row >= 0 && keys.remove(key(row));
+	}
+
+	/**
+	 * Returns true if the venue is in the index.
+	 *
+	 * @param venue
+	 *            the venue to look for
+	 * @return true if venue is in the index, and false otherwise
+	 */
+	public boolean contains(Venue venue) {
+		int row = table.rowOf(venue);
+		return row >= 0 && keys.contains(key(row));
+	}
+
+	/**
+	 * Returns the number of venues in the index.
+	 *
+	 * @return the number of venues in the index
+	 */
+	public int size() {
+		return keys.size();
+	}
+
+	/**
+	 * Returns the venue with the smallest capacity that can host an event of
+	 * the given size, or null if no venue in the index can host it.
+	 *
+	 * @param size
+	 *            the size of the event
+	 * @return the best-fitting venue for the event, or null
+	 */
+	public Venue firstFit(int size) {
+		Long key = keys.ceiling(((long) size) << 32);
+		return key == null ? null : table.getVenue(rowOf(key));
+	}
+
+	/**
+	 * Returns the venues in the index that can host an event of the given
+	 * size, in ascending order of capacity.
+	 *
+	 * @param size
+	 *            the size of the event
+	 * @return the venues with capacity at least size
+	 */
+	public List<Venue> getVenues(int size) {
+		NavigableSet<Long> range = keys.tailSet(((long) size) << 32, true);
+		List<Venue> result = new ArrayList<Venue>(range.size());
+		for (long key : range) {
+			result.add(table.getVenue(rowOf(key)));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the keys of the venues in the index that can host an event of
+	 * the given size, in ascending order of capacity. The table row of each
+	 * key is given by rowOf. The returned set is a view of the index, so it
+	 * must not be used after the index is modified.
+	 *
+	 * @param size
+	 *            the size of the event
+	 * @return the keys of the venues with capacity at least size
+	 */
+	public NavigableSet<Long> keysFor(int size) {
+		return keys.tailSet(((long) size) << 32, true);
+	}
+
+	/**
+	 * Returns the table row encoded in a key returned by keysFor.
+	 *
+	 * @param key
+	 *            a key of this index
+	 * @return the table row of the key
+	 */
+	public static int rowOf(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * Returns the row of venue in the table, or throws if it is not there.
+	 */
+	private int row(Venue venue) {
+		int row = table.rowOf(venue);
+		if (row < 0) {
+			throw new IllegalArgumentException("venue is not in the table");
+		}
+		return row;
+	}
+
+	/**
+	 * Returns the key of a row: its capacity in the high 32 bits and the row
+	 * in the low 32 bits.
+	 */
+	private long key(int row) {
+		return (((long) table.capacity(row)) << 32) | row;
+	}
+}
@@ -0,0 +1,525 @@
+package planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * An allocation of events to venues that may be changed by many threads at
+ * once, e.g. by the requests of several planners to an allocation server.
+ * </p>
+ *
+ * <p>
+ * An allocation is only made if it is safe: the traffic it generates must
+ * keep every corridor within its capacity. No locks are used. Each
+ * corridor's traffic is kept in one atomic long together with a version
+ * number, incremented by every change, and the number of allocations whose
+ * traffic has been added to the corridor but not yet committed.
+ * </p>
+ *
+ * <p>
+ * An allocation reads the elements of all of its venue's corridors, checks
+ * that its traffic fits on each of them, and then adds its traffic to each
+ * in turn with a compare-and-set from the value it read, marking the
+ * traffic as pending. If any corridor has changed since it was read, the
+ * traffic already added is taken off again and the whole allocation is
+ * read, checked and added again. Once its traffic is on every corridor,
+ * the allocation commits it by clearing its pending marks.
+ * </p>
+ *
+ * <p>
+ * An allocation is only rejected if a corridor's traffic would exceed its
+ * capacity when all of the corridor's traffic is committed. If the check
+ * fails on a corridor with pending traffic, which another allocation may
+ * yet take off again, the allocation waits for that traffic to be
+ * committed or taken off and checks again. So allocations at venues on
+ * different corridors never wait for, or retry because of, each other.
+ * Claiming an event and a venue is also a single atomic operation each.
+ * </p>
+ */
+public class ConcurrentAllocationModel {
+
+	// largest number of times getTraffic reads the loads to find them
+	// unchanged between two reads
+	private static final int SNAPSHOT_ATTEMPTS = 16;
+	// an element of loads is (version << 44 | pending << 32 | traffic)
+	private static final int PENDING_SHIFT = 32;
+	private static final int VERSION_SHIFT = 44;
+	// largest number of allocations with pending traffic on a corridor
+	private static final long MAX_PENDING = (1L << (VERSION_SHIFT
+			- PENDING_SHIFT)) - 1;
+
+	// the venues that can be allocated
+	private final VenueTable table;
+	// capacity of each corridor, by corridor id
+	private final int[] corridorCaps;
+	// (version, pending, traffic) of each corridor, by corridor id, where
+	// pending is the number of allocations whose traffic has been added
+	// but not committed
+	private final AtomicLongArray loads;
+	// number of times loads were read again because of a conflict
+	private final LongAdder conflicts;
+	// the event hosted by the venue of each row, or null if it is free
+	private final AtomicReferenceArray<Event> hosts;
+	// keys (capacity << 32 | row) of the free venues
+	private final ConcurrentSkipListSet<Long> free;
+	// events being allocated or allocated
+	private final Set<Event> claimed;
+	// the venue of each allocated event
+	private final ConcurrentHashMap<Event, Venue> allocations;
+	/*
+	 * Invariant: for each corridor id, traffic(loads[id]) is the traffic on
+	 * the corridor generated by the allocations, and the allocations being
+	 * made or undone && pending(loads[id]) is the number of allocations
+	 * being made whose traffic is included && traffic(loads[id]) <=
+	 * corridorCaps[id]
+	 * && every allocated event is claimed and hosted by its venue's row &&
+	 * free holds the keys of exactly the rows with no host
+	 */
+
+	/**
+	 * Creates a model in which no venue is allocated.
+	 *
+	 * @param venues
+	 *            the venues that can be allocated
+	 * @throws NullPointerException
+	 *             if venues is null
+	 */
+	public ConcurrentAllocationModel(List<Venue> venues) {
+		this.table = new VenueTable(venues);
+		this.corridorCaps = new int[CorridorPool.size()];
+		for (int id = 0; id < corridorCaps.length; id++) {
+			corridorCaps[id] = CorridorPool.get(id).getCapacity();
+		}
+		this.loads = new AtomicLongArray(corridorCaps.length);
+		this.conflicts = new LongAdder();
+		this.hosts = new AtomicReferenceArray<Event>(table.size());
+		this.free = new ConcurrentSkipListSet<Long>();
+		for (int row = 0; row < table.size(); row++) {
+			free.add(key(row));
+		}
+		this.claimed = ConcurrentHashMap.newKeySet();
+		this.allocations = new ConcurrentHashMap<Event, Venue>();
+	}
+
+	/**
+	 * Returns the table of the venues that can be allocated.
+	 *
+	 * @return the venue table
+	 */
+	public VenueTable getVenueTable() {
+		return table;
+	}
+
+	/**
+	 * Returns true if the venue is not hosting an event.
+	 *
+	 * @param venue
+	 *            a venue of the table
+	 * @return true if the venue is free
+	 * @throws IllegalArgumentException
+	 *             if venue is not in the table
+	 */
+	public boolean isFree(Venue venue) {
+		return hosts.get(row(venue)) == null;
+	}
+
+	/**
+	 * Returns up to limit of the free venues that can host an event of the
+	 * given size, in ascending order of capacity. Venues allocated or freed
+	 * during the call may or may not be included.
+	 *
+	 * @param size
+	 *            the size of the event
+	 * @param limit
+	 *            the largest number of venues to return
+	 * @return the first free venues with capacity at least size
+	 */
+	public List<Venue> getFreeVenues(int size, int limit) {
+		List<Venue> result = new ArrayList<Venue>();
+		for (long key : free.tailSet(((long) size) << 32)) {
+			if (result.size() == limit) {
+				break;
+			}
+			result.add(table.getVenue(CapacityIndex.rowOf(key)));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the venue the event is allocated to, or null if it is not
+	 * allocated.
+	 *
+	 * @param event
+	 *            an event
+	 * @return the event's venue, or null
+	 */
+	public Venue getVenue(Event event) {
+		return allocations.get(event);
+	}
+
+	/**
+	 * Returns a copy of the current allocations of events to venues.
+	 *
+	 * @return the allocations
+	 */
+	public Map<Event, Venue> getAllocations() {
+		return new HashMap<Event, Venue>(allocations);
+	}
+
+	/**
+	 * Returns the traffic on the given corridor.
+	 *
+	 * @param corridor
+	 *            a corridor
+	 * @return the traffic the allocations generate on the corridor
+	 */
+	public int getLoad(Corridor corridor) {
+		int id = CorridorPool.idOf(corridor);
+		return id >= 0 && id < loads.length() ? traffic(loads.get(id)) : 0;
+	}
+
+	/**
+	 * <p>
+	 * Returns the traffic generated by the allocations.
+	 * </p>
+	 *
+	 * <p>
+	 * The loads are read repeatedly until two reads in a row find every
+	 * corridor unchanged (by its version), so the traffic returned is the
+	 * traffic at one moment, unless the allocations change too often for
+	 * that to happen within SNAPSHOT_ATTEMPTS reads. The traffic of an
+	 * allocation that is being made may be included for some of its
+	 * corridors only.
+	 * </p>
+	 *
+	 * @return a copy of the traffic on every corridor with traffic
+	 */
+	public Traffic getTraffic() {
+		long[] previous = readLoads();
+		for (int attempt = 1; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+			long[] current = readLoads();
+			boolean unchanged = Arrays.equals(previous, current);
+			previous = current;
+			if (unchanged) {
+				break;
+			}
+		}
+		Traffic traffic = new Traffic();
+		for (int id = 0; id < previous.length; id++) {
+			if (traffic(previous[id]) > 0) {
+				traffic.updateTraffic(CorridorPool.get(id),
+						traffic(previous[id]));
+			}
+		}
+		return traffic;
+	}
+
+	/**
+	 * Returns the number of times an allocation had to read and check its
+	 * corridors again because another allocation changed one of them at the
+	 * same time, or had pending traffic that might not be committed.
+	 *
+	 * @return the number of conflicts so far
+	 */
+	public long getConflictCount() {
+		return conflicts.sum();
+	}
+
+	/**
+	 * <p>
+	 * Allocates event to venue, if doing so is safe.
+	 * </p>
+	 *
+	 * <p>
+	 * The event and the venue are claimed first, and then the traffic of the
+	 * event is added to the venue's corridors, unless it would exceed the
+	 * capacity of one of them given the traffic committed to it; in that
+	 * case the claims are released.
+	 * </p>
+	 *
+	 * @param event
+	 *            the event to allocate
+	 * @param venue
+	 *            the venue to host it
+	 * @return null if the event was allocated, or a corridor whose capacity
+	 *         the event's traffic would have exceeded
+	 * @throws IllegalArgumentException
+	 *             if the venue is not in the table or too small for the
+	 *             event
+	 * @throws IllegalStateException
+	 *             if the event is already allocated, or the venue is not
+	 *             free
+	 */
+	public Corridor allocate(Event event, Venue venue) {
+		int row = row(venue);
+		if (!venue.canHost(event)) {
+			throw new IllegalArgumentException(
+					"venue capacity is too small for the event");
+		}
+		if (!claimed.add(event)) {
+			throw new IllegalStateException("event is already allocated");
+		}
+		if (!hosts.compareAndSet(row, null, event)) {
+			claimed.remove(event);
+			throw new IllegalStateException("venue is not free");
+		}
+		free.remove(key(row));
+		Corridor overflow = addTraffic(row, event.getSize());
+		if (overflow != null) {
+			free.add(key(row));
+			hosts.set(row, null);
+			claimed.remove(event);
+			return overflow;
+		}
+		allocations.put(event, venue);
+		return null;
+	}
+
+	/**
+	 * Removes the allocation of the given event, if it is allocated.
+	 *
+	 * @param event
+	 *            the event
+	 * @return the venue that was hosting the event, or null if it was not
+	 *         allocated
+	 */
+	public Venue deallocate(Event event) {
+		Venue venue = allocations.remove(event);
+		if (venue == null) {
+			return null;
+		}
+		int row = table.rowOf(venue);
+		removeTraffic(row, event.getSize());
+		// listed as free before it is free, so that an allocation claiming
+		// it at once cannot be followed by this listing it again
+		free.add(key(row));
+		hosts.set(row, null);
+		claimed.remove(event);
+		return venue;
+	}
+
+	/**
+	 * <p>
+	 * Allocates as many of the given events as possible, largest first, each
+	 * to the free venue of smallest capacity that can host it safely.
+	 * </p>
+	 *
+	 * <p>
+	 * Other threads may change the allocations at the same time; a venue
+	 * claimed by another thread is skipped. Events that are already
+	 * allocated are skipped.
+	 * </p>
+	 *
+	 * @param events
+	 *            the events to allocate
+	 * @return the allocations made, in the order they were made
+	 */
+	public Map<Event, Venue> autoAllocate(List<Event> events) {
+		List<Event> largestFirst = new ArrayList<Event>(events);
+		Collections.sort(largestFirst, new Comparator<Event>() {
+			@Override
+			public int compare(Event e1, Event e2) {
+				return Integer.compare(e2.getSize(), e1.getSize());
+			}
+		});
+		Map<Event, Venue> made = new LinkedHashMap<Event, Venue>();
+		for (Event event : largestFirst) {
+			if (allocations.containsKey(event)) {
+				continue;
+			}
+			NavigableSet<Long> candidates =
+					free.tailSet(((long) event.getSize()) << 32);
+			for (long key : candidates) {
+				Venue venue = table.getVenue(CapacityIndex.rowOf(key));
+				try {
+					if (allocate(event, venue) == null) {
+						made.put(event, venue);
+						break;
+					}
+				} catch (IllegalStateException e) {
+					if (claimed.contains(event)) {
+						break; // allocated by another thread
+					}
+					// venue taken by another thread; try the next one
+				}
+			}
+		}
+		return made;
+	}
+
+	/**
+	 * Adds the traffic of an event of the given size at row to the loads,
+	 * unless it would make a corridor exceed its capacity given the traffic
+	 * committed to it.
+	 *
+	 * @return null if the traffic was added, or a corridor that would
+	 *         overflow
+	 */
+	private Corridor addTraffic(int row, int size) {
+		int start = table.start(row);
+		long[] read = new long[table.end(row) - start];
+		while (true) {
+			// read every corridor, then check the event's traffic fits
+			for (int k = start; k < table.end(row); k++) {
+				read[k - start] = loads.get(table.corridorId(k));
+			}
+			boolean wait = false;
+			for (int k = start; k < table.end(row); k++) {
+				int id = table.corridorId(k);
+				long load = read[k - start];
+				if (traffic(load) + table.scaledTraffic(row, k, size)
+						> corridorCaps[id]) {
+					if (pending(load) == 0) {
+						return CorridorPool.get(id); // all committed traffic
+					}
+					wait = true; // the pending traffic may be taken off
+				} else if (pending(load) == MAX_PENDING) {
+					wait = true;
+				}
+			}
+			if (!wait && add(row, size, read)) {
+				commit(row, size);
+				return null;
+			}
+			conflicts.increment();
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Adds the traffic of an event of the given size at row to each of its
+	 * corridors as pending traffic, with a compare-and-set from the values
+	 * read; if one fails, takes the traffic added off again.
+	 *
+	 * @require read[k - table.start(row)] was read from the corridor of each
+	 *          entry k of row
+	 * @return true if the traffic was added to every corridor
+	 */
+	private boolean add(int row, int size, long[] read) {
+		int start = table.start(row);
+		for (int k = start; k < table.end(row); k++) {
+			int traffic = table.scaledTraffic(row, k, size);
+			if (traffic != 0 && !loads.compareAndSet(table.corridorId(k),
+					read[k - start], next(read[k - start], traffic, 1))) {
+				// changed since it was read; roll back the corridors added
+				for (int j = start; j < k; j++) {
+					int added = table.scaledTraffic(row, j, size);
+					if (added != 0) {
+						change(table.corridorId(j), -added, -1);
+					}
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Commits the pending traffic of an event of the given size at row.
+	 */
+	private void commit(int row, int size) {
+		for (int k = table.start(row); k < table.end(row); k++) {
+			if (table.scaledTraffic(row, k, size) != 0) {
+				change(table.corridorId(k), 0, -1);
+			}
+		}
+	}
+
+	/**
+	 * Removes the traffic of an event of the given size at row from the
+	 * loads.
+	 */
+	private void removeTraffic(int row, int size) {
+		for (int k = table.start(row); k < table.end(row); k++) {
+			int traffic = table.scaledTraffic(row, k, size);
+			if (traffic != 0) {
+				change(table.corridorId(k), -traffic, 0);
+			}
+		}
+	}
+
+	/**
+	 * Changes the traffic and the number of pending allocations of the
+	 * corridor with the given id, retrying until no other change conflicts.
+	 * Only used for changes that cannot exceed the corridor's capacity.
+	 */
+	private void change(int id, int traffic, int pending) {
+		while (true) {
+			long read = loads.get(id);
+			if (loads.compareAndSet(id, read, next(read, traffic, pending))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of loads.
+	 */
+	private long[] readLoads() {
+		long[] copy = new long[loads.length()];
+		for (int id = 0; id < copy.length; id++) {
+			copy[id] = loads.get(id);
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the traffic part of an element of loads.
+	 */
+	private static int traffic(long load) {
+		return (int) load;
+	}
+
+	/**
+	 * Returns the number of allocations with pending traffic in an element
+	 * of loads.
+	 */
+	private static long pending(long load) {
+		return (load >>> PENDING_SHIFT) & MAX_PENDING;
+	}
+
+	/**
+	 * Returns the element of loads following the given one after a change
+	 * of traffic and of the number of pending allocations: the next version
+	 * (wrapping around), with the changed traffic and pending count.
+	 */
+	private static long next(long load, int traffic, int pending) {
+		long version = (load >>> VERSION_SHIFT) + 1;
+		return (version << VERSION_SHIFT)
+				| ((pending(load) + pending) << PENDING_SHIFT)
+				| ((traffic(load) + traffic) & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the row of venue in the table, or throws if it is not there.
+	 */
+	private int row(Venue venue) {
+		int row = table.rowOf(venue);
+		if (row < 0) {
+			throw new IllegalArgumentException("venue is not in the table");
+		}
+		return row;
+	}
+
+	/**
+	 * Returns the key of a row in free: its capacity in the high 32 bits and
+	 * the row in the low 32 bits, as for CapacityIndex.
+	 */
+	private long key(int row) {
+		return (((long) table.capacity(row)) << 32) | row;
+	}
+}
@@ -14,11 +14,14 @@ package planner;
  */
 public class Corridor implements Comparable<Corridor> {
 
-	private Location start; // start location of corridor
-	private Location end; // end location of corridor
-	private int capacity; // maximum capacity of corridor
+	private final Location start; // start location of corridor
+	private final Location end; // end location of corridor
+	private final int capacity; // maximum capacity of corridor
+	private final int id; // id given by CorridorPool, -1 if not interned
+	private final int hash; // precomputed hash code
 	/*
 	 * Invariant: start != end && (start + end) != null && Capacity > 0
+	 * && id >= -1
 	 */
 
 	/**
@@ -50,6 +53,20 @@ public class Corridor implements Comparable<Corridor> {
 		this.start = start;
 		this.end = end;
 		this.capacity = capacity;
+		this.id = -1;
+		this.hash = hash(start, end, capacity);
+	}
+
+	/**
+	 * Creates the canonical corridor with the given id. Only used by
+	 * CorridorPool, which has already validated the parameters.
+	 */
+	Corridor(Location start, Location end, int capacity, int id) {
+		this.start = start;
+		this.end = end;
+		this.capacity = capacity;
+		this.id = id;
+		this.hash = hash(start, end, capacity);
 	}
 
 	/**
@@ -58,8 +75,8 @@ public class Corridor implements Comparable<Corridor> {
 	 * @return the start location
 	 */
 	public Location getStart() {
-		Location temp = new Location(this.start.getName());
-		return temp;
+		// locations are immutable, so no copy is needed
+		return this.start;
 	}
 
 	/**
@@ -68,8 +85,7 @@ public class Corridor implements Comparable<Corridor> {
 	 * @return the end location
 	 */
 	public Location getEnd() {
-		Location temp = new Location(this.end.getName());
-		return temp;
+		return this.end;
 	}
 
 	/**
@@ -81,6 +97,25 @@ public class Corridor implements Comparable<Corridor> {
 		return capacity;
 	}
 
+	/**
+	 * Returns the id given to this corridor by CorridorPool, or -1 if this
+	 * corridor is not the canonical (interned) instance.
+	 *
+	 * @return the dense id of this corridor, or -1 if it is not interned
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the canonical instance of this corridor from CorridorPool.
+	 *
+	 * @return the interned corridor equal to this corridor
+	 */
+	public Corridor intern() {
+		return CorridorPool.intern(this);
+	}
+
 	/**
 	 * <p>
 	 * This method returns a string of the form: <br>
@@ -118,11 +153,20 @@ public class Corridor implements Comparable<Corridor> {
 	 */
 	@Override
 	public boolean equals(Object object) {
+		if (object == this) {
+			return true;
+		}
 		if (object instanceof Corridor) { // its a corridor
 			Corridor corridor = (Corridor) object;
-			if (corridor.getStart().equals(this.getStart())) {// same start
-				if (corridor.getEnd().equals(this.getEnd())) {// same end
-					if (corridor.getCapacity() == this.getCapacity()) {
+			if (corridor.id >= 0 && this.id >= 0) {
+				// two different canonical corridors are never equal
+				return false;
+			} else if (corridor.hash != this.hash) {
+				return false;
+			}
+			if (corridor.start.equals(this.start)) {// same start
+				if (corridor.end.equals(this.end)) {// same end
+					if (corridor.capacity == this.capacity) {
 						// same capacity thus this is equal to object
 						return true;
 					}
@@ -134,14 +178,22 @@ public class Corridor implements Comparable<Corridor> {
 
 	/**
 	 * The following hash code override method computes a hash code for each
-	 * property that defines object and adds it to the final hash code
+	 * property that defines object and adds it to the final hash code.
+	 * The hash code is computed once, when the corridor is created.
 	 */
 	@Override
 	public int hashCode() {
+		return hash;
+	}
+
+	/**
+	 * Computes the hash code of a corridor from its properties.
+	 */
+	private static int hash(Location start, Location end, int capacity) {
 		int hash = 7; // default primary number
-		hash = 19 * hash + this.getStart().hashCode();
-		hash = 19 * hash + this.getEnd().hashCode();
-		hash = 19 * hash + this.getCapacity();
+		hash = 19 * hash + start.hashCode();
+		hash = 19 * hash + end.hashCode();
+		hash = 19 * hash + capacity;
 		return hash;
 	}
 
@@ -172,21 +224,21 @@ public class Corridor implements Comparable<Corridor> {
 	public int compareTo(Corridor other) {
 		int startOrder;
 		int endOrder;
-		int capacityOrder;
-
-		/* Compare order for each corridor attribute */
-		startOrder = this.getStart().compareTo(other.getStart());
-		endOrder = this.getEnd().compareTo(other.getEnd());
-		capacityOrder = this.getCapacity() - other.getCapacity();
 
-		/* Evaluate final ordering */
-		if (startOrder == 0) {
-			if (endOrder == 0) {
-				return capacityOrder;
-			}
+		if (this == other) {
+			// same (e.g. interned) corridor
+			return 0;
+		}
+		/* Compare order for each corridor attribute, most significant first */
+		startOrder = this.start.compareTo(other.start);
+		if (startOrder != 0) {
+			return startOrder;
+		}
+		endOrder = this.end.compareTo(other.end);
+		if (endOrder != 0) {
 			return endOrder;
 		}
-		return startOrder;
+		return this.capacity - other.capacity;
 	}
 
 	/**
@@ -0,0 +1,201 @@
+package planner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * An immutable inverted index from each traffic corridor to the venues whose
+ * events generate traffic on it.
+ * </p>
+ *
+ * <p>
+ * The index is stored in compressed sparse row (CSR) form, with one row per
+ * corridor id (see CorridorPool). The venues loading the corridor with id c
+ * are at positions k, for start(c) &lt;= k &lt; end(c), where venueRow(k) is
+ * the position of the venue in the list the index was built from and load(k)
+ * is the traffic that venue generates on the corridor when it hosts an event
+ * of maximum size.
+ * </p>
+ *
+ * <p>
+ * Looking up the venues on a corridor therefore costs time proportional to
+ * the number of venues on that corridor, not the size of the catalogue.
+ * </p>
+ */
+public class CorridorIndex {
+
+	// the indexed venues, in the order they were given
+	private final List<Venue> venues;
+	// offsets[c] is the first entry of corridor id c, offsets[c+1] its end
+	private final int[] offsets;
+	// position in venues of the venue of each entry
+	private final int[] venueRows;
+	// capacity traffic of the venue of each entry on the entry's corridor
+	private final int[] loads;
+	/*
+	 * Invariant: venues != null && offsets.length >= 1 && offsets is
+	 * non-decreasing && venueRows.length == loads.length ==
+	 * offsets[offsets.length - 1] && each corridor's venueRows are in
+	 * ascending order
+	 */
+
+	/**
+	 * Builds the index of the given venues.
+	 *
+	 * @param venues
+	 *            the venues to index
+	 * @throws NullPointerException
+	 *             if venues is null or contains null
+	 */
+	public CorridorIndex(List<Venue> venues) {
+		this.venues = Collections.unmodifiableList(new ArrayList<Venue>(venues));
+		// interned corridor ids and loads of each venue
+		int[][] venueIds = new int[venues.size()][];
+		int[][] venueLoads = new int[venues.size()][];
+		for (int row = 0; row < venues.size(); row++) {
+			LoadVector traffic = venues.get(row).getCapacityLoads();
+			venueIds[row] = new int[traffic.size()];
+			venueLoads[row] = new int[traffic.size()];
+			for (int i = 0; i < traffic.size(); i++) {
+				venueIds[row][i] = traffic.getCorridor(i).getId();
+				venueLoads[row][i] = traffic.getLoad(i);
+			}
+		}
+		// count the venues on each corridor, then turn counts into offsets
+		offsets = new int[CorridorPool.size() + 1];
+		for (int[] ids : venueIds) {
+			for (int id : ids) {
+				offsets[id + 1]++;
+			}
+		}
+		for (int c = 1; c < offsets.length; c++) {
+			offsets[c] += offsets[c - 1];
+		}
+		venueRows = new int[offsets[offsets.length - 1]];
+		loads = new int[venueRows.length];
+		int[] next = new int[offsets.length - 1];
+		System.arraycopy(offsets, 0, next, 0, next.length);
+		for (int row = 0; row < venueIds.length; row++) {
+			for (int i = 0; i < venueIds[row].length; i++) {
+				int k = next[venueIds[row][i]]++;
+				venueRows[k] = row;
+				loads[k] = venueLoads[row][i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the venues this index was built from, in their original order.
+	 *
+	 * @return an unmodifiable list of the indexed venues
+	 */
+	public List<Venue> getVenues() {
+		return venues;
+	}
+
+	/**
+	 * Returns the number of indexed venues that generate traffic on the given
+	 * corridor.
+	 *
+	 * @param corridor
+	 *            the corridor to look up
+	 * @return the number of venues loading corridor
+	 * @throws NullPointerException
+	 *             if corridor is null
+	 */
+	public int degree(Corridor corridor) {
+		int id = CorridorPool.idOf(corridor);
+		return end(id) - start(id);
+	}
+
+	/**
+	 * Returns the venues that generate traffic on the given corridor, in the
+	 * order they were indexed.
+	 *
+	 * @param corridor
+	 *            the corridor to look up
+	 * @return the venues loading corridor
+	 * @throws NullPointerException
+	 *             if corridor is null
+	 */
+	public List<Venue> getVenues(Corridor corridor) {
+		int id = CorridorPool.idOf(corridor);
+		List<Venue> result = new ArrayList<Venue>(end(id) - start(id));
+		for (int k = start(id); k < end(id); k++) {
+			result.add(venues.get(venueRows[k]));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the venues that generate traffic on the given corridor, mapped
+	 * to the traffic each generates on it when hosting an event of maximum
+	 * size.
+	 *
+	 * @param corridor
+	 *            the corridor to look up
+	 * @return the venues loading corridor and their capacity traffic on it
+	 * @throws NullPointerException
+	 *             if corridor is null
+	 */
+	public Map<Venue, Integer> getLoads(Corridor corridor) {
+		int id = CorridorPool.idOf(corridor);
+		Map<Venue, Integer> result = new LinkedHashMap<Venue, Integer>();
+		for (int k = start(id); k < end(id); k++) {
+			result.put(venues.get(venueRows[k]), loads[k]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the first entry of the corridor with the given id.
+	 *
+	 * @param corridorId
+	 *            the id of an interned corridor, or -1
+	 * @return the position of the corridor's first entry
+	 */
+	public int start(int corridorId) {
+		return corridorId >= 0 && corridorId < offsets.length - 1
+				? offsets[corridorId] : 0;
+	}
+
+	/**
+	 * Returns the position after the last entry of the corridor with the given
+	 * id.
+	 *
+	 * @param corridorId
+	 *            the id of an interned corridor, or -1
+	 * @return the end position of the corridor's entries
+	 */
+	public int end(int corridorId) {
+		return corridorId >= 0 && corridorId < offsets.length - 1
+				? offsets[corridorId + 1] : 0;
+	}
+
+	/**
+	 * Returns the position (in getVenues()) of the venue of entry k.
+	 *
+	 * @param k
+	 *            the entry, with start(c) &lt;= k &lt; end(c) for some c
+	 * @return the row of the venue of the entry
+	 */
+	public int venueRow(int k) {
+		return venueRows[k];
+	}
+
+	/**
+	 * Returns the traffic of entry k when its venue hosts an event of maximum
+	 * size.
+	 *
+	 * @param k
+	 *            the entry, with start(c) &lt;= k &lt; end(c) for some c
+	 * @return the capacity traffic of the entry
+	 */
+	public int load(int k) {
+		return loads[k];
+	}
+}
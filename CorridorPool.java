@@ -0,0 +1,211 @@
+package planner;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A pool of canonical (interned) locations and traffic corridors.
+ * </p>
+ *
+ * <p>
+ * Every distinct location and corridor handed to the pool is mapped to a
+ * single shared instance. Each canonical corridor is given a dense integer id
+ * (0, 1, 2, ...) in the order it was first interned, so that other classes
+ * can store per-corridor values in plain arrays indexed by corridor id.
+ * Locations are numbered the same way.
+ * </p>
+ *
+ * <p>
+ * The pool may be used from many threads at once, e.g. by venue files being
+ * read concurrently. Lookups of values that are already in the pool, and
+ * get and size, never lock. Only the first interning of a new value briefly
+ * holds a lock, to hand out the next id; it is a ReentrantLock rather than a
+ * monitor so that virtual threads waiting for it do not pin their carrier
+ * thread.
+ * </p>
+ */
+public final class CorridorPool {
+
+	// canonical location for each location name
+	private static final Map<String, Location> locations =
+			new ConcurrentHashMap<String, Location>();
+	// dense id of each canonical location
+	private static final Map<Location, Integer> locationIds =
+			new ConcurrentHashMap<Location, Integer>();
+	// canonical corridor for each distinct corridor
+	private static final Map<Corridor, Corridor> corridors =
+			new ConcurrentHashMap<Corridor, Corridor>();
+	// canonical corridors indexed by their id; replaced when it is full
+	private static volatile Corridor[] byId = new Corridor[64];
+	// number of canonical corridors; written after byId
+	private static volatile int count;
+	// held while a new location or corridor is added
+	private static final ReentrantLock lock = new ReentrantLock();
+	/*
+	 * Invariant: byId[c.getId()] == c for every canonical corridor c &&
+	 * corridors.get(c) == c && locations.get(l.getName()) == l for every
+	 * canonical location l
+	 */
+
+	private CorridorPool() {
+		// static pool only
+	}
+
+	/**
+	 * Returns the canonical location with the given name.
+	 *
+	 * @param name
+	 *            the name of the location
+	 * @return the canonical location called name
+	 * @throws NullPointerException
+	 *             if name is null
+	 */
+	public static Location location(String name) {
+		Location canonical = locations.get(name);
+		if (canonical != null) {
+			return canonical;
+		}
+		lock.lock();
+		try {
+			canonical = locations.get(name);
+			if (canonical == null) {
+				canonical = new Location(name);
+				// the id is stored before the location can be looked up
+				locationIds.put(canonical, locationIds.size());
+				locations.put(name, canonical);
+			}
+			return canonical;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the dense id of the given location, interning it first if it is
+	 * not yet in the pool.
+	 *
+	 * @param location
+	 *            the location whose id is returned
+	 * @return the id of the location
+	 * @throws NullPointerException
+	 *             if location is null
+	 */
+	public static int locationId(Location location) {
+		Integer id = locationIds.get(location);
+		if (id != null) {
+			return id;
+		}
+		return locationIds.get(location(location.getName()));
+	}
+
+	/**
+	 * Returns the canonical corridor from start to end with the given
+	 * capacity.
+	 *
+	 * @param start
+	 *            the start location of the corridor
+	 * @param end
+	 *            the end location of the corridor
+	 * @param capacity
+	 *            the maximum capacity of the corridor
+	 * @return the canonical corridor
+	 * @throws NullPointerException
+	 *             if either start or end are null
+	 * @throws IllegalArgumentException
+	 *             if start is equal to end, or capacity is less than or equal
+	 *             to zero
+	 */
+	public static Corridor corridor(Location start, Location end,
+			int capacity) {
+		return intern(new Corridor(start, end, capacity));
+	}
+
+	/**
+	 * Returns the canonical corridor equal to the given corridor.
+	 *
+	 * @param corridor
+	 *            the corridor to intern
+	 * @return the canonical corridor equal to corridor
+	 * @throws NullPointerException
+	 *             if corridor is null
+	 */
+	public static Corridor intern(Corridor corridor) {
+		if (corridor.getId() >= 0) {
+			return corridor; // already canonical
+		}
+		Corridor canonical = corridors.get(corridor);
+		if (canonical != null) {
+			return canonical;
+		}
+		lock.lock();
+		try {
+			canonical = corridors.get(corridor);
+			if (canonical == null) {
+				int id = count;
+				canonical = new Corridor(location(corridor.getStart().getName()),
+						location(corridor.getEnd().getName()),
+						corridor.getCapacity(), id);
+				Corridor[] corridorsById = byId;
+				if (id == corridorsById.length) {
+					corridorsById = Arrays.copyOf(corridorsById, id * 2);
+					byId = corridorsById;
+				}
+				corridorsById[id] = canonical;
+				count = id + 1; // publishes the new corridor to get
+				corridors.put(canonical, canonical);
+			}
+			return canonical;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the id of the canonical corridor equal to the given corridor,
+	 * or -1 if no such corridor is in the pool. Unlike intern, this never adds
+	 * the corridor to the pool, so it suits read-only queries about corridors
+	 * that may never have been loaded.
+	 *
+	 * @param corridor
+	 *            the corridor to look up
+	 * @return the id of the canonical corridor equal to corridor, or -1
+	 * @throws NullPointerException
+	 *             if corridor is null
+	 */
+	public static int idOf(Corridor corridor) {
+		if (corridor.getId() >= 0) {
+			return corridor.getId(); // already canonical
+		}
+		Corridor canonical = corridors.get(corridor);
+		return canonical == null ? -1 : canonical.getId();
+	}
+
+	/**
+	 * Returns the canonical corridor with the given id.
+	 *
+	 * @param id
+	 *            the id of the corridor
+	 * @return the corridor with the given id
+	 * @throws IndexOutOfBoundsException
+	 *             if no corridor has been given the id
+	 */
+	public static Corridor get(int id) {
+		if (id < 0 || id >= count) {
+			throw new IndexOutOfBoundsException("no corridor has id " + id);
+		}
+		return byId[id];
+	}
+
+	/**
+	 * Returns the number of canonical corridors in the pool. Every corridor id
+	 * is less than this number.
+	 *
+	 * @return the number of interned corridors
+	 */
+	public static int size() {
+		return count;
+	}
+}
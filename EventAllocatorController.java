@@ -1,9 +1,15 @@
 package planner.gui;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
+import planner.Corridor;
 import planner.Event;
 import planner.InvalidTrafficException;
 import planner.Venue;
@@ -36,6 +42,44 @@ public class EventAllocatorController {
 		}
 		view.addAddHandler(new addActionHandler());
 		view.addRemoveHandler(new removeActionHandler());
+		view.addImportHandler(new importActionHandler());
+		view.addUndoHandler(new undoActionHandler());
+		view.addRedoHandler(new redoActionHandler());
+		// Reload the venues whenever the venue file changes, warning of any
+		// allocations that had to be removed
+		model.setOnAllocationsDropped(new droppedAllocationsHandler());
+		try {
+			model.startWatching();
+		} catch (IOException e) {
+			view.errorDialog("normal", "Venue file changes will not be "
+					+ "loaded: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Closes the model, saving the allocations made. To be called from the
+	 * application's stop method, on the JavaFX application thread, which
+	 * is the only thread that changes the allocations; calling it again has
+	 * no effect.
+	 */
+	public void stop() {
+		try {
+			model.close();
+		} catch (IOException e) {
+			view.errorDialog("normal", "Allocations may not have been "
+					+ "saved: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Warns that reloading the venue file removed allocations
+	 */
+	private class droppedAllocationsHandler
+			implements Consumer<Map<Event, Venue>> {
+		@Override
+		public void accept(Map<Event, Venue> dropped) {
+			view.errorDialog("normal", model.getErrorMsg());
+		}
 	}
 
 	/**
@@ -61,19 +105,22 @@ public class EventAllocatorController {
 				if (selectedV == null) {
 					view.errorDialog("normal", "Venue not selected");
 					throw new Exception();
+				} else if (!selectedV.canHost(newEvent)) {
+					view.errorDialog("normal", "Venue capacity is too small"
+							+ " for the event");
+					throw new Exception();
 				} else {
-					//update traffic according to current allocations
-					if (model.updateTraffic() == false) {
-						// traffic allocation was unsafe
-						view.errorDialog("normal", model.getErrorMsg());
+					// check the traffic the new allocation would generate
+					Corridor overflow = model.findOverflow(newEvent, selectedV);
+					if (overflow != null) {
+						// traffic allocation would be unsafe
+						view.errorDialog("normal", "Warning: Allocation is "
+								+ "unsafe, it would exceed the capacity of "
+								+ overflow);
 						throw new Exception();
 					}
-					model.getAllocations().put(newEvent, selectedV);
-					// update current allocation's Observable list
-					model.getAllocationListing().setAll(
-							model.getAllocations().entrySet());
-					// remove allocated venue from freeVenues table
-					model.getListedVenues().remove(selectedV);
+					// allocate venue, removing it from freeVenues table
+					model.addAllocation(newEvent, selectedV);
 				}
 			} catch (NumberFormatException e) {
 				// User event size input invalid
@@ -95,10 +142,13 @@ public class EventAllocatorController {
 				// retrieve allocation selected by user to be deleted
 				Map.Entry<Event, Venue> allocation =
 						view.getAllocTable().getSelectionModel().getSelectedItem();
-				// return the venue of former allocation back to free venueListing
-				model.getListedVenues().add(allocation.getValue());
-				// remove allocation from the AllocListing
-				model.getAllocationListing().remove(allocation);
+				if (allocation == null) {
+					view.errorDialog("normal", "Allocation not selected");
+					view.reset();
+					return;
+				}
+				// remove allocation, returning its venue to free venueListing
+				model.removeAllocation(allocation);
 				//update traffic according to current allocations
 				model.updateTraffic();
 
@@ -108,4 +158,67 @@ public class EventAllocatorController {
 			view.reset(); //Erase previous user input
 		}
 	}
+
+	/**
+	 * EventHandler class for UNDO button
+	 */
+	private class undoActionHandler implements EventHandler<ActionEvent> {
+		@Override
+		public void handle(ActionEvent event) {
+			if (!model.undo()) {
+				view.errorDialog("normal", "Nothing to undo");
+			}
+			view.reset(); //Erase previous user input
+		}
+	}
+
+	/**
+	 * EventHandler class for REDO button
+	 */
+	private class redoActionHandler implements EventHandler<ActionEvent> {
+		@Override
+		public void handle(ActionEvent event) {
+			if (!model.redo()) {
+				view.errorDialog("normal", "Nothing to redo");
+			}
+			view.reset(); //Erase previous user input
+		}
+	}
+
+	/**
+	 * EventHandler class for IMPORT button
+	 */
+	private class importActionHandler implements EventHandler<ActionEvent> {
+		@Override
+		public void handle(ActionEvent event) {
+			File file = view.chooseEventFile();
+			if (file == null) {
+				return; // cancelled
+			}
+			// read and allocate the events in the background
+			final Task<Map<Event, Venue>> task =
+					model.importEvents(file.getPath());
+			view.setImportEnabled(false);
+			task.setOnSucceeded(new EventHandler<WorkerStateEvent>() {
+				@Override
+				public void handle(WorkerStateEvent done) {
+					view.setImportEnabled(true);
+					// add the allocations found in one batch
+					int added = model.applyAllocations(task.getValue());
+					view.errorDialog("normal", task.getMessage()
+							+ (added < task.getValue().size()
+									? ", " + added + " still safe to add"
+									: ""));
+				}
+			});
+			task.setOnFailed(new EventHandler<WorkerStateEvent>() {
+				@Override
+				public void handle(WorkerStateEvent failed) {
+					view.setImportEnabled(true);
+					view.errorDialog("normal", "Import failed: "
+							+ task.getException().getMessage());
+				}
+			});
+		}
+	}
 }
@@ -1,21 +1,51 @@
 package planner.gui;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import planner.AdmissionIndex;
+import planner.AllocationJournal;
+import planner.Allocator;
+import planner.CapacityIndex;
 import planner.Corridor;
+import planner.CorridorIndex;
 import planner.Event;
+import planner.EventReader;
 import planner.FormatException;
 import planner.InvalidTrafficException;
+import planner.LoadVector;
 import planner.Traffic;
 import planner.Venue;
-import planner.VenueReader;
+import planner.VenueCatalogue;
+import planner.VenueTable;
 
 /**
  * The model for the event allocator program.
@@ -24,10 +54,18 @@ public class EventAllocatorModel {
 
 	// List of venues not  allocated
 	private List<Venue> freeVenues;
+	// Free venues ordered by capacity
+	private CapacityIndex freeIndex;
+	// Largest event each venue can safely host under the current allocation
+	private AdmissionIndex admission;
 	// List of Corridors belonging to venues with generated traffic
 	private List<Corridor> trafficGen;
+	// Total traffic generated by the current allocations
+	private Traffic totalTraffic;
+	// Number of corridors whose total traffic exceeds their capacity
+	private int overloaded;
 	// a Ordered Map of safe allocations of venues to specified events
-	private Map<Event, Venue> currentAllocation;
+	private TreeMap<Event, Venue> currentAllocation;
 	// Observable List of Venues that have not been allocated
 	private ObservableList<Venue> venueList;
 	// Observable List of current allocations of specified events to venues
@@ -35,29 +73,95 @@ public class EventAllocatorModel {
 	// Observable List of generated traffic
 	// for Table view (identical to freeVenues)
 	private ObservableList <Corridor> trafficList;
+	// Column-oriented table of all venues read from file
+	private VenueTable venueTable;
+	// Venues with traffic on each corridor, for all venues read from file
+	private CorridorIndex corridorIndex;
 	// Indicates if loadFile was successful (true) or not (false)
 	private boolean loadFile;
 	// Error message resulting from user input
 	private String error = null;
+	// Thread watching the venue file for changes, or null if not watching
+	private Thread watcher;
+	// Told of the allocations removed by each reload of the venue file
+	private Consumer<Map<Event, Venue>> droppedHandler;
+	// Size and checksum (see VenueCatalogue.checksum) of the venue file
+	// when it was last read
+	private long loadedSize = -1;
+	private long loadedChecksum = -1;
+	// Journal the changes to the allocations are saved to, or null if they
+	// are not being saved
+	private AllocationJournal journal;
+	// True if freeVenues, freeIndex, admission, trafficGen, totalTraffic and
+	// currentAllocation may be shared with a fork of this model (or with the
+	// model it was forked from), so must be copied before being changed
+	private boolean shared;
+	// Edits that can be undone, most recent first
+	private final Deque<Delta[]> undoStack = new ArrayDeque<Delta[]>();
+	// Undone edits that can be redone, most recently undone first
+	private final Deque<Delta[]> redoStack = new ArrayDeque<Delta[]>();
+	// Changes made so far by the edit in progress, or null if there is none
+	private List<Delta> edit;
+
+	// File the venues are read from
+	private static final String VENUE_FILE = "venues.txt";
+	// File the changes to the allocations are saved to
+	private static final String JOURNAL_FILE = "allocations.journal";
+	// Number of changes saved to the journal between snapshots
+	private static final int SNAPSHOT_RECORDS = 1024;
+	// Largest number of edits that can be undone
+	private static final int UNDO_LIMIT = 1000;
+	// Time without further changes to the venue file before it is reloaded
+	private static final long QUIET_MILLIS = 200;
+	// Largest number of removed allocations named after a reload
+	private static final int DROPPED_LISTED = 10;
 
 	/*
 	 * invariant:
 	 *
-	 * freeVenues && trafficGen && currentAllocation && venueList
-	 * && allocationsList && trafficList !=null
+	 * freeVenues && trafficGen && currentAllocation && venueTable
+	 * && corridorIndex && freeIndex && admission !=null
+	 *
+	 * venueList, allocationsList and trafficList are null until they are
+	 * first asked for, if this model is a fork
+	 *
+	 * freeIndex contains exactly the venues in freeVenues && venueList
+	 *
+	 * totalTraffic is the sum of the traffic of every allocation &&
+	 * trafficGen (and trafficList) holds exactly the corridors with traffic
+	 * in totalTraffic, in their natural order && overloaded is the number of
+	 * those corridors whose traffic exceeds their capacity
+	 *
+	 * loadedSize and loadedChecksum are only written by the watcher thread
+	 * once it has started
+	 *
+	 * if journal != null, replaying it gives currentAllocation
+	 *
+	 * undoStack.size() <= UNDO_LIMIT && undoing every edit in undoStack, in
+	 * order, is possible and would undo those edits to currentAllocation
 	 *
 	 */
 
 	/**
-	 * Initialises the model for the event allocator program.
+	 * Initialises the model for the event allocator program, restoring the
+	 * allocations saved by the previous session.
 	 * @throws FormatException
 	 * @throws IOException
 	 */
 	public EventAllocatorModel() throws IOException, FormatException {
 		try {
-			// list of venues read from venues.txt
-			List<Venue> venues = VenueReader.read("venues.txt");
+			// taken before reading, so a change while reading is reloaded
+			long size = Files.size(Paths.get(VENUE_FILE));
+			long checksum = VenueCatalogue.checksum(Paths.get(VENUE_FILE));
+			// list of venues read from venues.txt (or its binary snapshot)
+			List<Venue> venues = VenueCatalogue.read(VENUE_FILE);
+			loadedSize = size;
+			loadedChecksum = checksum;
 			loadFile = true; //successful reading of file
+			// column-oriented catalogue and index of the venues
+			// affecting each corridor
+			this.venueTable = new VenueTable(venues);
+			this.corridorIndex = new CorridorIndex(venues);
 			//Initial list of free venues
 			this.freeVenues = new ArrayList<Venue>(venues);
 			//Observable list of free venues
@@ -73,17 +177,128 @@ public class EventAllocatorModel {
 			// Catch other exception that may happen
 			this.error = e.getMessage();
 		}
+		if (this.corridorIndex == null) {
+			// no venues were read
+			this.freeVenues = new ArrayList<Venue>();
+			this.venueList = FXCollections.observableArrayList(freeVenues);
+			this.venueTable = new VenueTable(freeVenues);
+			this.corridorIndex = new CorridorIndex(freeVenues);
+		}
+		// every venue is initially free, and there is no traffic
+		this.freeIndex = new CapacityIndex(venueTable);
+		this.admission = new AdmissionIndex(venueTable, corridorIndex);
 		//Initial map of empty allocations
 		this.currentAllocation =
 				new TreeMap<Event, Venue>(getAllocationsCmp());
 		// List of traffic generated
 		this.trafficGen = new ArrayList<>();
+		this.totalTraffic = new Traffic();
 		//Observable List of traffic generated to be used for Table View
 		this.trafficList = FXCollections.
 				observableArrayList(trafficGen);
 		//Observable List of current allocations for use with Table View
-		this.allocationsList = FXCollections.
-				observableArrayList(currentAllocation.entrySet());
+		this.allocationsList = FXCollections.observableArrayList();
+		if (loadFile && error == null) {
+			openJournal();
+		}
+	}
+
+	/**
+	 * Initialises a fork of the given model (see fork).
+	 */
+	private EventAllocatorModel(EventAllocatorModel parent) {
+		this.loadFile = parent.loadFile;
+		this.venueTable = parent.venueTable;
+		this.corridorIndex = parent.corridorIndex;
+		this.freeVenues = parent.freeVenues;
+		this.freeIndex = parent.freeIndex;
+		this.admission = parent.admission;
+		this.trafficGen = parent.trafficGen;
+		this.totalTraffic = parent.totalTraffic;
+		this.overloaded = parent.overloaded;
+		this.currentAllocation = parent.currentAllocation;
+		this.shared = true;
+		parent.shared = true;
+	}
+
+	/**
+	 * <p>
+	 * Returns a new model starting with the same venues and allocations as
+	 * this one, in which a different scenario can be planned: changes to
+	 * either model do not affect the other.
+	 * </p>
+	 *
+	 * <p>
+	 * The fork shares the (immutable) venue table and corridor index with
+	 * this model, and shares the allocations and traffic totals until one of
+	 * the two models is changed, when that model copies them. Its
+	 * observable listings are only created when first asked for. The
+	 * fork's allocations are not saved to the journal, and it does not
+	 * watch the venue file.
+	 * </p>
+	 *
+	 * @return a fork of this model
+	 */
+	public EventAllocatorModel fork() {
+		return new EventAllocatorModel(this);
+	}
+
+	/**
+	 * Copies the allocation state, if it may be shared with another model,
+	 * so that it can be changed.
+	 */
+	private void unshare() {
+		if (!shared) {
+			return;
+		}
+		this.freeVenues = new ArrayList<Venue>(freeVenues);
+		this.freeIndex = new CapacityIndex(freeIndex);
+		this.admission = new AdmissionIndex(admission);
+		this.trafficGen = new ArrayList<Corridor>(trafficGen);
+		this.totalTraffic = new Traffic(totalTraffic);
+		this.currentAllocation = new TreeMap<Event, Venue>(currentAllocation);
+		this.shared = false;
+	}
+
+	/**
+	 * Opens the allocation journal, restores the allocations it records, and
+	 * saves every later change to the allocations to it. If the journal
+	 * cannot be opened, the allocations are not saved.
+	 */
+	private void openJournal() {
+		try {
+			AllocationJournal opened =
+					new AllocationJournal(Paths.get(JOURNAL_FILE));
+			addBatch(opened.recover(venueTable.getVenues()), true);
+			this.journal = opened;
+		} catch (IOException e) {
+			this.error = "Allocations will not be saved: " + e.getMessage();
+		}
+	}
+
+	/**
+	 * Adds a change to the allocations to the edit in progress, if any, and
+	 * saves it to the journal, if the allocations are being saved, taking a
+	 * snapshot of the allocations every SNAPSHOT_RECORDS changes. Must be
+	 * called after currentAllocation has been changed.
+	 */
+	private void record(Event event, Venue venue, int sign) {
+		if (edit != null) {
+			edit.add(new Delta(event, venue, sign));
+		}
+		if (journal == null) {
+			return;
+		}
+		try {
+			journal.append(event, venue, sign);
+			if (journal.getRecordCount() >= SNAPSHOT_RECORDS) {
+				journal.snapshot(currentAllocation);
+			}
+		} catch (IOException e) {
+			this.error = "Allocations are no longer being saved: "
+					+ e.getMessage();
+			this.journal = null;
+		}
 	}
 
 	/**
@@ -132,10 +347,764 @@ public class EventAllocatorModel {
 	 * allocation of events to venues.
 	 */
 	public ObservableList<Corridor> getTrafficListing() {
+		if (trafficList == null) {
+			trafficList = FXCollections.observableArrayList(trafficGen);
+		}
 		return trafficList;
 	}
 
+	/**
+	 * Returns the venues whose events generate traffic on the given corridor,
+	 * out of all the venues read from file.
+	 *
+	 * @param corridor
+	 *            the corridor to look up
+	 * @return list of the venues affecting corridor
+	 */
+	public List<Venue> getVenuesAffecting(Corridor corridor) {
+		return corridorIndex.getVenues(corridor);
+	}
+
+	/**
+	 * Returns the column-oriented table of all venues read from file.
+	 */
+	public VenueTable getVenueTable() {
+		return venueTable;
+	}
+
+	/**
+	 * Returns the index of the venues affecting each corridor.
+	 */
+	public CorridorIndex getCorridorIndex() {
+		return corridorIndex;
+	}
+
+	/**
+	 * Returns the free venues that can host an event of the given size, in
+	 * ascending order of capacity.
+	 *
+	 * @param size
+	 *            the size of the event
+	 * @return list of the free venues with capacity of at least size
+	 */
+	public List<Venue> getHostingVenues(int size) {
+		return freeIndex.getVenues(size);
+	}
+
+	/**
+	 * Returns the largest size of event the given venue could host without
+	 * making the current allocation unsafe.
+	 *
+	 * @param venue
+	 *            a venue read from file
+	 * @return the admissible event size for venue
+	 */
+	public int getAdmissibleSize(Venue venue) {
+		return admission.getAdmissibleSize(venue);
+	}
+
+	/**
+	 * Returns true if the given venue can host an event of the given size
+	 * without making the current allocation unsafe.
+	 *
+	 * @param venue
+	 *            a venue read from file
+	 * @param size
+	 *            the size of the event
+	 * @return true if the venue can safely host the event
+	 */
+	public boolean canHostSafely(Venue venue, int size) {
+		return admission.canHost(venue, size);
+	}
+
+	/**
+	 * Returns true if the event can be allocated to the given venue: the
+	 * venue is large enough for the event, and the traffic the event would
+	 * generate keeps every corridor within its capacity. Nothing is changed.
+	 *
+	 * @param event
+	 *            the event to allocate
+	 * @param venue
+	 *            a free venue
+	 * @return true if allocating event to venue would be safe
+	 */
+	public boolean canAllocate(Event event, Venue venue) {
+		return venue.canHost(event) && findOverflow(event, venue) == null;
+	}
+
+	/**
+	 * <p>
+	 * Returns a corridor whose capacity would be exceeded if the event were
+	 * allocated to the given venue, or null if the allocation would be safe.
+	 * Nothing is changed.
+	 * </p>
+	 *
+	 * <p>
+	 * Only the corridors the venue generates traffic on are checked, against
+	 * the traffic the current allocations already put on them.
+	 * </p>
+	 *
+	 * @param event
+	 *            the event to allocate
+	 * @param venue
+	 *            a free venue that can host the event
+	 * @return a corridor that would overflow, or null if there is none
+	 * @throws IllegalArgumentException
+	 *             if the size of the event exceeds the capacity of the venue
+	 */
+	public Corridor findOverflow(Event event, Venue venue) {
+		LoadVector loads = venue.getLoads(event);
+		for (int i = 0; i < loads.size(); i++) {
+			Corridor corridor = loads.getCorridor(i);
+			if (admission.getLoad(corridor.getId()) + loads.getLoad(i)
+					> corridor.getCapacity()) {
+				return corridor;
+			}
+		}
+		if (overloaded > 0) {
+			// some other corridor is already over capacity
+			for (Corridor corridor : trafficGen) {
+				if (totalTraffic.getTraffic(corridor)
+						> corridor.getCapacity()) {
+					return corridor;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Allocates the event to the given free venue, and updates the
+	 * allocation and free venue listings accordingly.
+	 *
+	 * @param event
+	 *            the event to allocate
+	 * @param venue
+	 *            the free venue to host the event
+	 */
+	public void addAllocation(Event event, Venue venue) {
+		beginEdit();
+		Venue previous = currentAllocation.get(event);
+		if (previous != null) {
+			// the event moves: free its previous venue first
+			removeOne(event, previous);
+		}
+		addOne(event, venue);
+		endEdit();
+	}
+
+	/**
+	 * Removes the given allocation, returning its venue to the free venues.
+	 *
+	 * @param allocation
+	 *            the allocation of an event to a venue to remove
+	 */
+	public void removeAllocation(Map.Entry<Event, Venue> allocation) {
+		beginEdit();
+		removeOne(allocation.getKey(), allocation.getValue());
+		endEdit();
+	}
+
+	/**
+	 * Returns true if there is an edit of the allocations to undo.
+	 */
+	public boolean canUndo() {
+		return !undoStack.isEmpty();
+	}
+
+	/**
+	 * Returns true if there is an undone edit of the allocations to redo.
+	 */
+	public boolean canRedo() {
+		return !redoStack.isEmpty();
+	}
+
+	/**
+	 * <p>
+	 * Undoes the most recent edit of the allocations (an addition, removal
+	 * or applyAllocations batch) that has not been undone.
+	 * </p>
+	 *
+	 * <p>
+	 * Each edit is kept as the list of allocations it added and removed, and
+	 * is undone by reversing them one at a time, which updates the traffic
+	 * and listings incrementally. Up to UNDO_LIMIT edits are kept. Making a
+	 * new edit discards the edits that could be redone, and reloading the
+	 * venues discards all of them.
+	 * </p>
+	 *
+	 * @return true if an edit was undone, false if there was none to undo
+	 */
+	public boolean undo() {
+		Delta[] step = undoStack.pollFirst();
+		if (step == null) {
+			return false;
+		}
+		for (int i = step.length - 1; i >= 0; i--) {
+			if (step[i].sign > 0) {
+				removeOne(step[i].event, step[i].venue);
+			} else {
+				addOne(step[i].event, step[i].venue);
+			}
+		}
+		redoStack.push(step);
+		return true;
+	}
+
+	/**
+	 * Redoes the most recently undone edit of the allocations (see undo).
+	 *
+	 * @return true if an edit was redone, false if there was none to redo
+	 */
+	public boolean redo() {
+		Delta[] step = redoStack.pollFirst();
+		if (step == null) {
+			return false;
+		}
+		for (Delta delta : step) {
+			if (delta.sign > 0) {
+				addOne(delta.event, delta.venue);
+			} else {
+				removeOne(delta.event, delta.venue);
+			}
+		}
+		undoStack.push(step);
+		return true;
+	}
+
+	/**
+	 * Starts collecting the changes made by an edit of the allocations.
+	 */
+	private void beginEdit() {
+		edit = new ArrayList<Delta>();
+	}
+
+	/**
+	 * Ends the edit in progress, making it the edit to undo next if it
+	 * changed anything.
+	 */
+	private void endEdit() {
+		if (!edit.isEmpty()) {
+			undoStack.push(edit.toArray(new Delta[edit.size()]));
+			if (undoStack.size() > UNDO_LIMIT) {
+				undoStack.removeLast();
+			}
+			redoStack.clear();
+		}
+		edit = null;
+	}
+
+	/**
+	 * Allocates event, which is not allocated, to the free venue, updating
+	 * the traffic and listings incrementally.
+	 */
+	private void addOne(Event event, Venue venue) {
+		unshare();
+		currentAllocation.put(event, venue);
+		if (allocationsList != null) {
+			// update current allocation's Observable list, in event order
+			int at = -allocationIndex(event) - 1;
+			allocationsList.add(at, entry(event, venue));
+		}
+		// remove allocated venue from the free venues
+		freeVenues.remove(venue);
+		freeIndex.remove(venue);
+		if (venueList != null) {
+			venueList.remove(venue);
+		}
+		admission.addTraffic(venue, event.getSize(), 1);
+		applyTraffic(event, venue, 1, true);
+		record(event, venue, 1);
+	}
+
+	/**
+	 * Removes the allocation of event to venue, updating the traffic and
+	 * listings incrementally.
+	 */
+	private void removeOne(Event event, Venue venue) {
+		unshare();
+		currentAllocation.remove(event);
+		if (allocationsList != null) {
+			allocationsList.remove(allocationIndex(event));
+		}
+		// return the venue of the former allocation to the free venues
+		freeVenues.add(venue);
+		freeIndex.add(venue);
+		if (venueList != null) {
+			venueList.add(venue);
+		}
+		admission.addTraffic(venue, event.getSize(), -1);
+		applyTraffic(event, venue, -1, true);
+		record(event, venue, -1);
+	}
+
+	/**
+	 * Returns the index of the allocation of event in allocationsList, or
+	 * (-(insertion point) - 1) if the event is not allocated.
+	 */
+	private int allocationIndex(Event event) {
+		List<Event> events = new AbstractList<Event>() {
+			@Override
+			public Event get(int index) {
+				return allocationsList.get(index).getKey();
+			}
+
+			@Override
+			public int size() {
+				return allocationsList.size();
+			}
+		};
+		return Collections.binarySearch(events, event,
+				currentAllocation.comparator());
+	}
+
+	/**
+	 * Replaces the allocation listing, if it has been created, with the
+	 * current allocations, in a single update.
+	 */
+	private void refreshAllocationListing() {
+		if (allocationsList == null) {
+			return;
+		}
+		List<Map.Entry<Event, Venue>> listing =
+				new ArrayList<Map.Entry<Event, Venue>>();
+		for (Map.Entry<Event, Venue> allocation
+				: currentAllocation.entrySet()) {
+			listing.add(entry(allocation.getKey(), allocation.getValue()));
+		}
+		allocationsList.setAll(listing);
+	}
+
+	/**
+	 * Returns an immutable allocation of event to venue, for the allocation
+	 * listing. (The entries of currentAllocation itself may change when
+	 * other entries are removed from it.)
+	 */
+	private static Map.Entry<Event, Venue> entry(Event event, Venue venue) {
+		return new AbstractMap.SimpleImmutableEntry<Event, Venue>(event, venue);
+	}
+
+	/**
+	 * <p>
+	 * Starts reading events from a CSV file (see EventReader.read) and
+	 * finding safe venues for them among the free venues, on a background
+	 * thread.
+	 * </p>
+	 *
+	 * <p>
+	 * The venues are found greedily (see Allocator.allocateGreedy), taking
+	 * into account the traffic of the current allocations. Events that are
+	 * already allocated are skipped. The model itself is not changed: when
+	 * the task succeeds, its value should be passed to applyAllocations on
+	 * the JavaFX application thread. Its message reports how many of the
+	 * events read could be allocated.
+	 * </p>
+	 *
+	 * @param fileName
+	 *            the name of the CSV file listing the events
+	 * @return the running task, whose value is the allocation found
+	 */
+	public Task<Map<Event, Venue>> importEvents(final String fileName) {
+		// copies of the state the allocator works on, taken on this thread
+		final VenueTable table = venueTable;
+		final CapacityIndex free = new CapacityIndex(freeIndex);
+		final AdmissionIndex load = new AdmissionIndex(admission);
+		final Set<Event> allocated =
+				new TreeSet<Event>(currentAllocation.comparator());
+		allocated.addAll(currentAllocation.keySet());
+		Task<Map<Event, Venue>> task = new Task<Map<Event, Venue>>() {
+			@Override
+			protected Map<Event, Venue> call()
+					throws IOException, FormatException {
+				List<Event> events = new ArrayList<Event>();
+				for (Event event : EventReader.read(fileName)) {
+					if (!allocated.contains(event)) {
+						events.add(event);
+					}
+				}
+				Map<Event, Venue> allocation =
+						Allocator.allocateGreedy(events, table, free, load);
+				updateMessage("Allocated " + allocation.size() + " of "
+						+ events.size() + " events");
+				return allocation;
+			}
+		};
+		Thread thread = new Thread(task, "event import");
+		thread.setDaemon(true);
+		thread.start();
+		return task;
+	}
+
+	/**
+	 * <p>
+	 * Adds the given allocations of events to free venues, updating the
+	 * allocation, free venue and traffic listings once for the whole batch.
+	 * </p>
+	 *
+	 * <p>
+	 * An allocation is skipped if its event is already allocated, its venue
+	 * is no longer free, or it is no longer safe, as the model may have
+	 * changed since the allocations were found.
+	 * </p>
+	 *
+	 * @param allocations
+	 *            the allocations to add, e.g. from importEvents
+	 * @return the number of allocations added
+	 */
+	public int applyAllocations(Map<Event, Venue> allocations) {
+		beginEdit();
+		int added = addBatch(allocations, false);
+		endEdit();
+		return added;
+	}
+
+	/**
+	 * Adds the given allocations as for applyAllocations. If restoring, the
+	 * allocations are ones restored from the journal, which are not checked
+	 * for safety (they were made by the user) and not saved again.
+	 */
+	private int addBatch(Map<Event, Venue> allocations, boolean restoring) {
+		unshare();
+		Set<Venue> allocatedVenues = new HashSet<Venue>();
+		// restored allocations, added to the admission index together
+		Map<Event, Venue> restored = new HashMap<Event, Venue>();
+		for (Map.Entry<Event, Venue> allocation : allocations.entrySet()) {
+			Event event = allocation.getKey();
+			Venue venue = allocation.getValue();
+			if (currentAllocation.containsKey(event)
+					|| !freeIndex.contains(venue)
+					|| (!restoring && !canAllocate(event, venue))) {
+				continue;
+			}
+			currentAllocation.put(event, venue);
+			freeIndex.remove(venue);
+			applyTraffic(event, venue, 1, false);
+			if (restoring) {
+				restored.put(event, venue);
+			} else {
+				admission.addTraffic(venue, event.getSize(), 1);
+				record(event, venue, 1);
+			}
+			allocatedVenues.add(venue);
+		}
+		admission.addTraffic(restored);
+		if (!allocatedVenues.isEmpty()) {
+			// one update of each listing for the whole batch
+			freeVenues.removeAll(allocatedVenues);
+			if (venueList != null) {
+				venueList.removeAll(allocatedVenues);
+			}
+			refreshAllocationListing();
+			if (trafficList != null) {
+				trafficList.setAll(trafficGen);
+			}
+		}
+		return allocatedVenues.size();
+	}
+
+	/**
+	 * Returns the total traffic generated by the current allocation of
+	 * events to venues.
+	 *
+	 * @return a copy of the total traffic
+	 */
+	public Traffic getTotalTraffic() {
+		return new Traffic(totalTraffic);
+	}
+
+	/**
+	 * <p>
+	 * Starts watching the venue file, reloading the venues each time it
+	 * changes (see reloadVenues).
+	 * </p>
+	 *
+	 * <p>
+	 * The file is watched and parsed on a daemon thread; the reloaded venues
+	 * are applied to the model on the JavaFX application thread. If the
+	 * changed file cannot be read, the current venues are kept.
+	 * </p>
+	 *
+	 * @throws IOException
+	 *             if the directory of the venue file cannot be watched
+	 */
+	public void startWatching() throws IOException {
+		if (watcher != null) {
+			return; // already watching
+		}
+		final Path file = Paths.get(VENUE_FILE).toAbsolutePath();
+		final WatchService service = file.getFileSystem().newWatchService();
+		file.getParent().register(service,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		watcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch(service, file);
+			}
+		}, "venue file watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	/**
+	 * Sets the handler told of the allocations removed when the venue file
+	 * is reloaded (see reloadVenues), each time any are removed. It is
+	 * called on the JavaFX application thread.
+	 *
+	 * @param handler
+	 *            the handler, or null for none
+	 */
+	public void setOnAllocationsDropped(Consumer<Map<Event, Venue>> handler) {
+		this.droppedHandler = handler;
+	}
+
+	/**
+	 * Stops watching the venue file, if it is being watched.
+	 */
+	public void stopWatching() {
+		if (watcher != null) {
+			watcher.interrupt();
+			watcher = null;
+		}
+	}
+
+	/**
+	 * Stops watching the venue file and closes the journal, writing any
+	 * changes not yet written to the storage device. Later changes to the
+	 * allocations are not saved. Closing a closed model has no effect.
+	 * Like every change to the allocations, it must be called on the JavaFX
+	 * application thread, so that the journal is never closed while a
+	 * change is being written to it.
+	 *
+	 * @throws IOException
+	 *             if the journal cannot be closed
+	 */
+	public void close() throws IOException {
+		stopWatching();
+		if (journal != null) {
+			AllocationJournal closing = journal;
+			this.journal = null;
+			closing.close();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Replaces the venues read from file with the given venues, applying
+	 * only the differences to the free venues and their listing.
+	 * </p>
+	 *
+	 * <p>
+	 * Venues that are equal to one already loaded are kept as they are, so
+	 * their allocations, and the traffic of those allocations, are not
+	 * touched. Venues that are no longer in the list are removed. If such a
+	 * venue is allocated, its allocation moves to a new venue with the same
+	 * name (i.e. a changed venue) if that venue can safely host the event,
+	 * and is removed otherwise; only the traffic of these allocations is
+	 * recomputed. The edits that could be undone or redone are discarded.
+	 * </p>
+	 *
+	 * <p>
+	 * If any allocations are removed, the error message says so, and they
+	 * are returned and passed to the handler set by setOnAllocationsDropped,
+	 * so that the planner can be warned.
+	 * </p>
+	 *
+	 * <p>
+	 * Must be called on the JavaFX application thread.
+	 * </p>
+	 *
+	 * @param venues
+	 *            the venues now described by the venue file
+	 * @return the allocations that were removed, mapping each event to the
+	 *         venue it was allocated to
+	 */
+	public Map<Event, Venue> reloadVenues(List<Venue> venues) {
+		Set<Venue> current = new HashSet<Venue>(venueTable.getVenues());
+		Set<Venue> reloaded = new HashSet<Venue>(venues);
+		Set<Venue> removed = new HashSet<Venue>();
+		for (Venue venue : current) {
+			if (!reloaded.contains(venue)) {
+				removed.add(venue);
+			}
+		}
+		// added venues, by name, in file order
+		Map<String, List<Venue>> added = new HashMap<String, List<Venue>>();
+		Set<Venue> newFree = new LinkedHashSet<Venue>();
+		for (Venue venue : venues) {
+			if (!current.contains(venue) && newFree.add(venue)) {
+				if (!added.containsKey(venue.getName())) {
+					added.put(venue.getName(), new ArrayList<Venue>());
+				}
+				added.get(venue.getName()).add(venue);
+			}
+		}
+		Map<Event, Venue> dropped = new TreeMap<Event, Venue>(
+				getAllocationsCmp());
+		if (removed.isEmpty() && newFree.isEmpty()) {
+			return dropped; // nothing changed
+		}
+		unshare();
+		// the venues of earlier edits may no longer exist
+		undoStack.clear();
+		redoStack.clear();
+		// take the traffic of removed venues' allocations off the corridors
+		Map<Event, Venue> moved = new HashMap<Event, Venue>();
+		for (Map.Entry<Event, Venue> allocation
+				: currentAllocation.entrySet()) {
+			if (removed.contains(allocation.getValue())) {
+				admission.addTraffic(allocation.getValue(),
+						allocation.getKey().getSize(), -1);
+				applyTraffic(allocation.getKey(), allocation.getValue(), -1,
+						true);
+				moved.put(allocation.getKey(), allocation.getValue());
+			}
+		}
+		// rebuild the catalogue, keeping the traffic of the other allocations
+		this.venueTable = new VenueTable(venues);
+		this.corridorIndex = new CorridorIndex(venues);
+		this.admission = new AdmissionIndex(venueTable, corridorIndex,
+				admission);
+		// move the allocations of removed venues to their new versions
+		for (Map.Entry<Event, Venue> allocation : moved.entrySet()) {
+			Event event = allocation.getKey();
+			Venue replacement = null;
+			List<Venue> candidates = added.get(allocation.getValue().getName());
+			if (candidates != null) {
+				for (Iterator<Venue> i = candidates.iterator(); i.hasNext();) {
+					Venue candidate = i.next();
+					if (candidate.canHost(event)
+							&& admission.canHost(candidate, event.getSize())) {
+						replacement = candidate;
+						i.remove();
+						break;
+					}
+				}
+			}
+			if (replacement == null) {
+				currentAllocation.remove(event);
+				record(event, allocation.getValue(), -1);
+				dropped.put(event, allocation.getValue());
+			} else {
+				currentAllocation.put(event, replacement);
+				newFree.remove(replacement);
+				admission.addTraffic(replacement, event.getSize(), 1);
+				applyTraffic(event, replacement, 1, true);
+				record(event, replacement, 1);
+			}
+		}
+		// apply the differences to the free venues
+		freeVenues.removeAll(removed);
+		freeVenues.addAll(newFree);
+		if (venueList != null) {
+			venueList.removeAll(removed);
+			venueList.addAll(newFree);
+		}
+		this.freeIndex = new CapacityIndex(venueTable, freeVenues);
+		if (!moved.isEmpty()) {
+			refreshAllocationListing();
+		}
+		if (!dropped.isEmpty()) {
+			this.error = droppedMessage(dropped);
+			if (droppedHandler != null) {
+				droppedHandler.accept(dropped);
+			}
+		}
+		return dropped;
+	}
+
+	/**
+	 * Describes the allocations removed by a reload, naming at most
+	 * DROPPED_LISTED of them.
+	 */
+	private static String droppedMessage(Map<Event, Venue> dropped) {
+		StringBuilder message = new StringBuilder("The venue file changed: "
+				+ dropped.size() + (dropped.size() == 1 ? " allocation was"
+						: " allocations were")
+				+ " removed, as the changed venues can no longer host them:");
+		int listed = 0;
+		for (Map.Entry<Event, Venue> allocation : dropped.entrySet()) {
+			if (listed++ == DROPPED_LISTED) {
+				message.append("\n... and ")
+				.append(dropped.size() - DROPPED_LISTED).append(" more");
+				break;
+			}
+			message.append("\n").append(allocation.getKey().getName())
+			.append(" (").append(allocation.getKey().getSize())
+			.append(") at ").append(allocation.getValue().getName());
+		}
+		return message.toString();
+	}
+
+	/**
+	 * Waits for changes to file, reloading the venues after each change until
+	 * the thread is interrupted.
+	 */
+	private void watch(WatchService service, Path file) {
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					changed |= file.getFileName().equals(event.context());
+				}
+				key.reset();
+				if (changed) {
+					// let whoever is writing the file finish first
+					while ((key = service.poll(QUIET_MILLIS,
+							TimeUnit.MILLISECONDS)) != null) {
+						key.pollEvents();
+						key.reset();
+					}
+					reload(file);
+				}
+			}
+		} catch (InterruptedException e) {
+			// stopWatching was called
+		} catch (ClosedWatchServiceException e) {
+			// no longer able to watch
+		} finally {
+			try {
+				service.close();
+			} catch (IOException e) {
+				// nothing more to do
+			}
+		}
+	}
+
+	/**
+	 * Re-reads file if its contents differ from when it was last read, and
+	 * applies the venues read on the JavaFX application thread. The
+	 * contents are compared by checksum, as the file's last-modified time
+	 * can stay the same when it is edited.
+	 */
+	private void reload(Path file) {
+		try {
+			long size = Files.size(file);
+			long checksum = VenueCatalogue.checksum(file);
+			if (size == loadedSize && checksum == loadedChecksum) {
+				return; // not changed since it was last read
+			}
+			final List<Venue> venues = VenueCatalogue.read(file.toString());
+			loadedSize = size;
+			loadedChecksum = checksum;
+			Platform.runLater(new Runnable() {
+				@Override
+				public void run() {
+					reloadVenues(venues);
+				}
+			});
+		} catch (IOException e) {
+			// e.g. the file is being replaced; keep the current venues
+		} catch (FormatException e) {
+			// keep the current venues until the file is valid again
+		}
+	}
+
 	public ObservableList<Venue> getListedVenues() {
+		if (venueList == null) {
+			venueList = FXCollections.observableArrayList(freeVenues);
+		}
 		return venueList;
 	}
 
@@ -144,6 +1113,10 @@ public class EventAllocatorModel {
 	 * @return ObservableList of free Venues
 	 */
 	public ObservableList<Map.Entry<Event, Venue>> getAllocationListing() {
+		if (allocationsList == null) {
+			allocationsList = FXCollections.observableArrayList();
+			refreshAllocationListing();
+		}
 		return allocationsList;
 	}
 
@@ -171,40 +1144,52 @@ public class EventAllocatorModel {
 
 
 	/**
-	 * Returns true if the traffic caused by the given allocation is safe, and
-	 * false otherwise.
+	 * Adds (sign 1) or removes (sign -1) the traffic generated by hosting
+	 * event at venue to the total traffic, keeping trafficGen and the count
+	 * of overloaded corridors up to date, and trafficList too if
+	 * updateListing is true. Only the venue's own corridors are visited.
 	 */
-	private boolean allocationSafe(Traffic trafficGen) {
-		return trafficGen.isSafe();
+	private void applyTraffic(Event event, Venue venue, int sign,
+			boolean updateListing) {
+		LoadVector loads = venue.getLoads(event);
+		for (int i = 0; i < loads.size(); i++) {
+			Corridor corridor = loads.getCorridor(i);
+			int before = totalTraffic.getTraffic(corridor);
+			totalTraffic.updateTraffic(corridor, sign * loads.getLoad(i));
+			int after = totalTraffic.getTraffic(corridor);
+			int capacity = corridor.getCapacity();
+			if (before <= capacity && after > capacity) {
+				overloaded++;
+			} else if (before > capacity && after <= capacity) {
+				overloaded--;
+			}
+			if (before == 0 && after > 0) {
+				// corridor now has traffic; insert it in natural order
+				int at = -Collections.binarySearch(trafficGen, corridor) - 1;
+				trafficGen.add(at, corridor);
+				if (updateListing && trafficList != null) {
+					trafficList.add(at, corridor);
+				}
+			} else if (before > 0 && after == 0) {
+				int at = Collections.binarySearch(trafficGen, corridor);
+				trafficGen.remove(at);
+				if (updateListing && trafficList != null) {
+					trafficList.remove(at);
+				}
+			}
+		}
 	}
 
 	/**
-	 * Returns the traffic caused by the given allocation.
+	 * Returns true if the traffic caused by the current allocations is
+	 * safe, and false otherwise (recording a warning as the error message).
+	 * The traffic listing is kept up to date by each change to the
+	 * allocations, so this only checks the count of overloaded corridors.
 	 *
-	 * @requires allocationsList!=null
-	 * @ensures traffic is updated if allocation is safe and traffic
-	 * 			doesn't change if allocation is unsafe.
+	 * @ensures traffic is unchanged
 	 */
 	public boolean updateTraffic() throws InvalidTrafficException {
-		Traffic result = new Traffic();
-		// Add traffic from allocations
-		for (Map.Entry<Event, Venue> e : allocationsList) {
-			result.addTraffic(e.getValue().getTraffic(e.getKey()));
-		}
-		// Return traffic generated if allocation safe
-		if (allocationSafe(result)) {
-			trafficGen.clear();
-			trafficGen.addAll(result.getCorridorsWithTraffic());
-			// Set up natural ordering of traffic
-			Comparator<Corridor> cmp = new Comparator<Corridor>() {
-				@Override
-				public int compare(Corridor c1, Corridor c2) {
-					return c1.compareTo(c2);
-				}
-			};
-			// naturally order traffic
-			Collections.sort(trafficGen, cmp);
-			trafficList.setAll(trafficGen);
+		if (overloaded == 0) {
 			return true;
 		} else {
 			// allocation is unsafe
@@ -212,4 +1197,20 @@ public class EventAllocatorModel {
 			return false;
 		}
 	}
+
+	/**
+	 * An allocation of an event to a venue added (sign 1) or removed (sign
+	 * -1) by an edit.
+	 */
+	private static final class Delta {
+		final Event event;
+		final Venue venue;
+		final int sign;
+
+		Delta(Event event, Venue venue, int sign) {
+			this.event = event;
+			this.venue = venue;
+			this.sign = sign;
+		}
+	}
 }
@@ -1,4 +1,5 @@
 package planner.gui;
+import java.io.File;
 import java.util.Map;
 
 import javafx.application.Platform;
@@ -26,6 +27,7 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.TextAlignment;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.util.Callback;
@@ -46,10 +48,10 @@ public class EventAllocatorView {
 	private TextField eventName;
 	// event size user input text field
 	private TextField eventSize;
-	// VBox containing add and remove buttons
+	// VBox containing add, remove, import, undo and redo buttons
 	private VBox buttons;
 	// User GUI buttons
-	private Button add, remove;
+	private Button add, remove, importEvents, undo, redo;
 	// table view of current allocation
 	private TableView<Map.Entry<Event, Venue>> allocTable;
 	// table view of free venues
@@ -262,6 +264,10 @@ public class EventAllocatorView {
 		Button button = new Button(name);
 		if (name.equals("ADD")) {
 			button.setTextFill(Color.CHARTREUSE);
+		} else if (name.equals("IMPORT")) {
+			button.setTextFill(Color.DODGERBLUE);
+		} else if (name.equals("UNDO") || name.equals("REDO")) {
+			button.setTextFill(Color.GOLD);
 		} else {
 			button.setTextFill(Color.RED);
 		}
@@ -278,16 +284,19 @@ public class EventAllocatorView {
 	 * adds buttons for user interaction to a vertical pane
 	 */
 	private void addButtons() {
-		// create add and remove buttons
+		// create add, remove, import, undo and redo buttons
 		add = setButton("ADD");
 		remove = setButton("REMOVE");
+		importEvents = setButton("IMPORT");
+		undo = setButton("UNDO");
+		redo = setButton("REDO");
 		buttons = new VBox();
 		buttons.autosize();
 		buttons.setSpacing(5);
 		buttons.setPadding(new Insets(5,5,5,5));
 		buttons.setAlignment(Pos.CENTER_RIGHT);
 		// Minimum size is set to size of buttons
-		buttons.getChildren().addAll(add, remove);
+		buttons.getChildren().addAll(add, remove, importEvents, undo, redo);
 	}
 
 	/**
@@ -350,6 +359,58 @@ public class EventAllocatorView {
 		remove.setOnAction(handler);
 	}
 
+	/**
+	 * Add handler to the import operation.
+	 * @param handler
+	 *            the handler to be added
+	 */
+	public void addImportHandler(EventHandler<ActionEvent> handler) {
+		importEvents.setOnAction(handler);
+	}
+
+	/**
+	 * Add handler to the undo operation.
+	 * @param handler
+	 *            the handler to be added
+	 */
+	public void addUndoHandler(EventHandler<ActionEvent> handler) {
+		undo.setOnAction(handler);
+	}
+
+	/**
+	 * Add handler to the redo operation.
+	 * @param handler
+	 *            the handler to be added
+	 */
+	public void addRedoHandler(EventHandler<ActionEvent> handler) {
+		redo.setOnAction(handler);
+	}
+
+	/**
+	 * Asks the user to choose a CSV file of events to import.
+	 *
+	 * @return the file chosen, or null if the user cancelled
+	 */
+	public File chooseEventFile() {
+		FileChooser chooser = new FileChooser();
+		chooser.setTitle("Import events");
+		chooser.getExtensionFilters().addAll(
+				new FileChooser.ExtensionFilter("Event lists (*.csv)",
+						"*.csv", "*.csv.gz"),
+				new FileChooser.ExtensionFilter("All files", "*"));
+		return chooser.showOpenDialog(root.getScene().getWindow());
+	}
+
+	/**
+	 * Enables or disables the import button, e.g. while an import runs.
+	 *
+	 * @param enabled
+	 *            true to enable the button
+	 */
+	public void setImportEnabled(boolean enabled) {
+		importEvents.setDisable(!enabled);
+	}
+
 	/**
 	 * Return table of venues not allocated
 	 */
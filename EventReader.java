@@ -0,0 +1,140 @@
+package planner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Provides methods to read in a list of events from a CSV file.
+ */
+public class EventReader {
+
+	/**
+	 * <p>
+	 * Reads a CSV file called fileName that lists events, and returns a list
+	 * containing each of the events read from the file, in the order that
+	 * they appear in the file.
+	 * </p>
+	 *
+	 * <p>
+	 * Each non-empty line of the file describes one event, and is of the form
+	 * <br>
+	 * <br>
+	 * "NAME,SIZE"<br>
+	 * <br>
+	 * where NAME is the non-empty name of the event and SIZE is a positive
+	 * integer denoting the size of the event. The name is everything before
+	 * the last comma on the line, so it may itself contain commas. Leading
+	 * and trailing whitespace around the name and size is ignored, and so
+	 * are empty lines. If the first line is exactly "name,size" (in any case)
+	 * it is taken to be a header and skipped.
+	 * </p>
+	 *
+	 * <p>
+	 * The same event (the same name and size) may not be listed twice. As
+	 * for venue files, the file may be gzip or zstd compressed.
+	 * </p>
+	 *
+	 * @param fileName
+	 *            the name of the file to read from.
+	 * @return a list of the events from the file, in the order in which they
+	 *         appear in the file.
+	 * @throws IOException
+	 *             if there is an error reading from the input file.
+	 * @throws FormatException
+	 *             if there is an error with the input format. The message
+	 *             includes the line of the file where the problem was
+	 *             detected.
+	 */
+	public static List<Event> read(String fileName) throws IOException,
+	FormatException {
+		List<Event> events = new ArrayList<Event>();
+		Set<String> seen = new HashSet<String>(); // "SIZE,NAME" of each event
+		int lineNumber = 0;
+		try (LineReader file = LineReader.open(Paths.get(fileName))) {
+			while (file.next()) {
+				Event event = parse(file.text(), ++lineNumber, seen);
+				if (event != null) {
+					events.add(event);
+				}
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * Reads a list of events, in the format described for read(String),
+	 * from the given reader, e.g. the body of a request. The reader is not
+	 * closed.
+	 *
+	 * @param in
+	 *            the reader to read from
+	 * @return a list of the events read, in the order in which they appear
+	 * @throws IOException
+	 *             if there is an error reading from in
+	 * @throws FormatException
+	 *             if there is an error with the input format. The message
+	 *             includes the line where the problem was detected.
+	 */
+	public static List<Event> read(BufferedReader in) throws IOException,
+	FormatException {
+		List<Event> events = new ArrayList<Event>();
+		Set<String> seen = new HashSet<String>(); // "SIZE,NAME" of each event
+		int lineNumber = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			Event event = parse(line, ++lineNumber, seen);
+			if (event != null) {
+				events.add(event);
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * Parses the given line of an event list, returning the event it
+	 * describes, or null if it is blank or the header. seen holds the
+	 * events of the earlier lines, and has the event added to it.
+	 */
+	private static Event parse(String text, int lineNumber, Set<String> seen)
+			throws FormatException {
+		String line = text.trim();
+		if (line.isEmpty() || (lineNumber == 1
+				&& line.equalsIgnoreCase("name,size"))) {
+			return null; // blank line or header
+		}
+		int comma = line.lastIndexOf(',');
+		if (comma < 0) {
+			throw error(lineNumber, "Expected NAME,SIZE");
+		}
+		String name = line.substring(0, comma).trim();
+		if (name.isEmpty()) {
+			throw error(lineNumber, "Event name cannot be empty string");
+		}
+		int size;
+		try {
+			size = Integer.parseInt(line.substring(comma + 1).trim());
+		} catch (NumberFormatException e) {
+			throw error(lineNumber, "Invalid event size");
+		}
+		if (size <= 0) {
+			throw error(lineNumber, "Invalid event size");
+		}
+		if (!seen.add(size + "," + name)) {
+			throw error(lineNumber, "Duplicate events");
+		}
+		return new Event(name, size);
+	}
+
+	/**
+	 * Returns a FormatException for a problem on the given line.
+	 */
+	private static FormatException error(int lineNumber, String message) {
+		return new FormatException("Error on line: " + lineNumber + "\n"
+				+ message);
+	}
+}
@@ -0,0 +1,119 @@
+package planner;
+
+/**
+ * <p>
+ * A set of 64-bit fingerprints, stored in a single open-addressing hash table
+ * of longs.
+ * </p>
+ *
+ * <p>
+ * Each fingerprint takes 8 to 16 bytes, rather than the object, entry and
+ * boxing overhead of a HashSet, so the fingerprints of millions of venues
+ * fit in a few megabytes.
+ * </p>
+ */
+final class FingerprintSet {
+
+	// largest fraction of slots in use before the table is doubled
+	private static final double MAX_LOAD = 0.5;
+
+	// slots of the table; 0 marks an empty slot
+	private long[] slots = new long[1024];
+	// whether the fingerprint 0, which cannot be stored in slots, is present
+	private boolean hasZero;
+	// number of fingerprints in the set
+	private int size;
+	/*
+	 * Invariant: slots.length is a power of two && size <= slots.length *
+	 * MAX_LOAD + 1
+	 */
+
+	/**
+	 * Adds a fingerprint to the set.
+	 *
+	 * @param fingerprint
+	 *            the fingerprint to add
+	 * @return true if the fingerprint was not already in the set
+	 */
+	boolean add(long fingerprint) {
+		if (fingerprint == 0) {
+			if (hasZero) {
+				return false;
+			}
+			hasZero = true;
+			size++;
+			return true;
+		}
+		int mask = slots.length - 1;
+		int i = slot(fingerprint, mask);
+		while (slots[i] != 0) {
+			if (slots[i] == fingerprint) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		slots[i] = fingerprint;
+		size++;
+		if (size > slots.length * MAX_LOAD) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the fingerprint is in the set.
+	 *
+	 * @param fingerprint
+	 *            the fingerprint to look for
+	 * @return true if the set contains fingerprint
+	 */
+	boolean contains(long fingerprint) {
+		if (fingerprint == 0) {
+			return hasZero;
+		}
+		int mask = slots.length - 1;
+		for (int i = slot(fingerprint, mask); slots[i] != 0;
+				i = (i + 1) & mask) {
+			if (slots[i] == fingerprint) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of fingerprints in the set.
+	 *
+	 * @return the size of the set
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the home slot of a non-zero fingerprint. The fingerprint's high
+	 * bits are mixed in, since its low bits alone may be poorly distributed.
+	 */
+	private static int slot(long fingerprint, int mask) {
+		long mixed = fingerprint * 0x9e3779b97f4a7c15L;
+		return (int) (mixed ^ (mixed >>> 32)) & mask;
+	}
+
+	/**
+	 * Doubles the size of the table, re-inserting every fingerprint.
+	 */
+	private void grow() {
+		long[] old = slots;
+		slots = new long[old.length * 2];
+		int mask = slots.length - 1;
+		for (long fingerprint : old) {
+			if (fingerprint != 0) {
+				int i = slot(fingerprint, mask);
+				while (slots[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				slots[i] = fingerprint;
+			}
+		}
+	}
+}
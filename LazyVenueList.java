@@ -0,0 +1,265 @@
+package planner;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * An unmodifiable list of the venues in a venue file, each of which is parsed
+ * only when it is first accessed.
+ * </p>
+ *
+ * <p>
+ * Creating the list scans the file once to find where each venue description
+ * starts, without parsing the descriptions, and indexes the venues by name.
+ * Venues that have been parsed are kept in a cache of soft references, so
+ * the garbage collector may discard them when memory runs low; they are then
+ * parsed again if they are accessed again.
+ * </p>
+ *
+ * <p>
+ * A format error in a venue description is only found when that venue is
+ * accessed, and is thrown as an UncheckedFormatException with the same
+ * message as VenueReader.read would give. Duplicate venues are not detected.
+ * The file should not be modified while the list is in use.
+ * </p>
+ *
+ * <p>
+ * The list may be read from many threads at once. It keeps the file open
+ * until it is closed; venues that are not cached cannot be read after that.
+ * </p>
+ */
+final class LazyVenueList extends AbstractList<Venue>
+		implements VenueList, RandomAccess {
+
+	// the venue file
+	private final Path file;
+	// open for reading venue descriptions until the list is closed
+	private final FileChannel channel;
+	// size of the file when it was scanned
+	private final long fileSize;
+	// number of venue descriptions in the file
+	private final int size;
+	// byte offset of the start of each venue description
+	private final long[] offsets;
+	// line number of the first line of each venue description
+	private final int[] firstLines;
+	// index of the first venue with each name
+	private final Map<String, Integer> firstByName;
+	// index of the next venue with the same name as each venue, or -1
+	private final int[] nextByName;
+	// venues that have been parsed, or null if not yet parsed; an element
+	// is only replaced once its venue has been discarded, so every thread
+	// sees the same Venue for a row while it is cached
+	private final AtomicReferenceArray<SoftReference<Venue>> cache;
+	/*
+	 * Invariant: 0 <= size <= offsets.length && offsets is increasing &&
+	 * offsets[size - 1] < fileSize
+	 */
+
+	/**
+	 * Scans the given venue file to create a lazy list of its venues.
+	 *
+	 * @param file
+	 *            the venue file
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	LazyVenueList(Path file) throws IOException {
+		long[] starts = new long[1024];
+		int[] lines = new int[1024];
+		Map<String, Integer> lastByName = new HashMap<String, Integer>();
+		Map<String, Integer> first = new HashMap<String, Integer>();
+		int[] next = new int[1024];
+		int count = 0;
+		long length;
+		try (FileChannel channel = FileChannel.open(file);
+				LineReader reader = new LineReader(channel)) {
+			length = channel.size();
+			int line = 0; // number of the current line
+			int lineInVenue = 0; // lines of the current venue seen so far
+			while (reader.next()) {
+				line++;
+				if (lineInVenue == 0) {
+					// first line of a venue description: its name
+					if (count == starts.length) {
+						starts = Arrays.copyOf(starts, count * 2);
+						lines = Arrays.copyOf(lines, count * 2);
+						next = Arrays.copyOf(next, count * 2);
+					}
+					starts[count] = reader.offset();
+					lines[count] = line;
+					next[count] = -1;
+					String name = reader.text();
+					Integer last = lastByName.put(name, count);
+					if (last == null) {
+						first.put(name, count);
+					} else {
+						next[last] = count;
+					}
+					count++;
+				}
+				if (reader.length() == 0 && lineInVenue >= 2) {
+					// empty line ending a venue description
+					lineInVenue = 0;
+				} else {
+					lineInVenue++;
+				}
+			}
+		}
+		this.file = file;
+		this.channel = FileChannel.open(file);
+		this.fileSize = length;
+		this.size = count;
+		this.offsets = starts;
+		this.firstLines = lines;
+		this.firstByName = first;
+		this.nextByName = next;
+		this.cache = new AtomicReferenceArray<SoftReference<Venue>>(count);
+	}
+
+	/**
+	 * Returns the number of venues in the file.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the venue at the given position in the file, parsing it if it
+	 * has not been parsed or has been discarded from the cache.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if index is out of range
+	 * @throws UncheckedFormatException
+	 *             if the venue's description is not correctly formatted
+	 * @throws UncheckedIOException
+	 *             if the file cannot be read
+	 */
+	@Override
+	public Venue get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("no venue at " + index);
+		}
+		SoftReference<Venue> cached = cache.get(index);
+		Venue venue = cached == null ? null : cached.get();
+		if (venue != null) {
+			return venue;
+		}
+		Venue parsed;
+		try {
+			parsed = VenueReader.readVenue(readDescription(index),
+					firstLines[index]);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (FormatException e) {
+			throw new UncheckedFormatException(e);
+		}
+		SoftReference<Venue> reference = new SoftReference<Venue>(parsed);
+		while (!cache.compareAndSet(index, cached, reference)) {
+			// another thread cached the venue first; use its instance
+			cached = cache.get(index);
+			venue = cached == null ? null : cached.get();
+			if (venue != null) {
+				return venue;
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * Closes the file. Venues that are cached can still be read.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Returns the position of the first venue in the file equal to the given
+	 * object, or -1 if there is none. Only venues with the same name as the
+	 * object are parsed.
+	 */
+	@Override
+	public int indexOf(Object object) {
+		if (!(object instanceof Venue)) {
+			return -1;
+		}
+		Integer first = firstByName.get(((Venue) object).getName());
+		for (int i = first == null ? -1 : first; i >= 0; i = nextByName[i]) {
+			if (get(i).equals(object)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns true if the file describes a venue equal to the given object.
+	 */
+	@Override
+	public boolean contains(Object object) {
+		return indexOf(object) >= 0;
+	}
+
+	/**
+	 * Returns the position of the first venue in the file with the given
+	 * name, or -1 if there is none, without parsing any venue.
+	 *
+	 * @param name
+	 *            the name of the venue
+	 * @return the index of the first venue called name, or -1
+	 */
+	int indexOfName(String name) {
+		Integer first = firstByName.get(name);
+		return first == null ? -1 : first;
+	}
+
+	/**
+	 * Returns the number of venues currently parsed and cached.
+	 *
+	 * @return the number of cached venues
+	 */
+	int cachedCount() {
+		int cached = 0;
+		for (int i = 0; i < size; i++) {
+			SoftReference<Venue> reference = cache.get(i);
+			if (reference != null && reference.get() != null) {
+				cached++;
+			}
+		}
+		return cached;
+	}
+
+	/**
+	 * Reads the bytes of the description of the venue at index.
+	 * @require 0 <= index < size
+	 */
+	private byte[] readDescription(int index) throws IOException {
+		long end = index + 1 < size ? offsets[index + 1] : fileSize;
+		byte[] bytes = new byte[(int) (end - offsets[index])];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		// positional reads, so threads can share the channel
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offsets[index] + buffer.position()) < 0) {
+				throw new EOFException(file + " has been truncated");
+			}
+		}
+		return bytes;
+	}
+}
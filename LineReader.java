@@ -0,0 +1,350 @@
+package planner;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>
+ * Reads a byte channel one line at a time, without decoding whole lines into
+ * strings or using regular expressions.
+ * </p>
+ *
+ * <p>
+ * Lines are separated by '\n'. The separator is not part of the line. A final
+ * line without a separator is only returned if it is not empty, so a file
+ * ending in "\n" has no extra empty last line. Text is decoded as UTF-8.
+ * </p>
+ */
+class LineReader implements Closeable {
+
+	// default size of the read buffer
+	static final int BUFFER_SIZE = 1 << 16;
+	// size of the read buffer for decompressed input
+	static final int LARGE_BUFFER_SIZE = 1 << 20;
+	// returned by parseInt for bytes that are not an int
+	static final long NOT_AN_INT = Long.MIN_VALUE;
+	// first two bytes of a gzip file
+	private static final int GZIP = 0x1f8b;
+	// first four bytes of a zstd frame
+	private static final int ZSTD = 0x28b52ffd;
+
+	// the channel being read, or null when reading an array
+	private final ReadableByteChannel channel;
+	// bytes read from the channel and not yet consumed
+	private final ByteBuffer buffer;
+	// contents of the current line
+	private byte[] line = new byte[128];
+	// length of the current line
+	private int length;
+	// number of bytes consumed from the channel, including separators
+	private long consumed;
+	// byte offset of the start of the current line
+	private long lineOffset;
+	/*
+	 * Invariant: 0 <= length <= line.length && lineOffset <= consumed
+	 */
+
+	/**
+	 * Creates a line reader over the given channel, with a read buffer of the
+	 * default size.
+	 */
+	LineReader(ReadableByteChannel channel) {
+		this(channel, BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a line reader over the given channel, with a read buffer of the
+	 * given size in bytes.
+	 */
+	LineReader(ReadableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.buffer.flip(); // initially empty
+	}
+
+	/**
+	 * Creates a line reader over bytes from (inclusive) to to (exclusive) of
+	 * the given array, which must not be modified while it is read.
+	 */
+	LineReader(byte[] bytes, int from, int to) {
+		this.channel = null;
+		this.buffer = ByteBuffer.wrap(bytes, from, to - from);
+		this.consumed = from;
+	}
+
+	/**
+	 * <p>
+	 * Opens a line reader over the given file, decompressing it as it is read
+	 * if it is gzip or zstd compressed.
+	 * </p>
+	 *
+	 * <p>
+	 * The compression is detected from the first bytes of the file, not its
+	 * name. Reading zstd requires the zstd-jni library
+	 * (com.github.luben.zstd) on the class path; it is loaded reflectively,
+	 * so it is not needed to read other files.
+	 * </p>
+	 *
+	 * @throws IOException
+	 *             if the file cannot be opened, or is zstd compressed and
+	 *             zstd-jni is not available
+	 */
+	static LineReader open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file);
+		try {
+			int magic = magic(channel);
+			if (magic == 0) {
+				return new LineReader(channel, BUFFER_SIZE);
+			}
+			InputStream compressed = Channels.newInputStream(channel);
+			if (magic == GZIP) {
+				return new LineReader(inflated(new GZIPInputStream(
+						compressed, BUFFER_SIZE)), LARGE_BUFFER_SIZE);
+			}
+			return new LineReader(inflated(zstd(new BufferedInputStream(
+					compressed, BUFFER_SIZE))), LARGE_BUFFER_SIZE);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns true if the file is gzip or zstd compressed.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	static boolean isCompressed(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file)) {
+			return magic(channel) != 0;
+		}
+	}
+
+	/**
+	 * Returns GZIP or ZSTD if the channel starts with that format's magic
+	 * number, and 0 otherwise, leaving the channel at position 0.
+	 */
+	private static int magic(FileChannel channel) throws IOException {
+		ByteBuffer start = ByteBuffer.allocate(4);
+		while (start.hasRemaining() && channel.read(start) >= 0) {
+			// read until four bytes or end of file
+		}
+		channel.position(0);
+		if (start.position() < start.capacity()) {
+			return 0; // too short to be compressed
+		}
+		int first = start.getInt(0);
+		if ((first >>> 16) == GZIP) {
+			return GZIP;
+		} else if (first == ZSTD) {
+			return ZSTD;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns a zstd-jni ZstdInputStream decompressing in.
+	 */
+	private static InputStream zstd(InputStream in) throws IOException {
+		try {
+			Class<?> type = Class.forName("com.github.luben.zstd.ZstdInputStream");
+			return (InputStream) type.getConstructor(InputStream.class)
+					.newInstance(in);
+		} catch (ClassNotFoundException e) {
+			throw new IOException("reading zstd compressed files requires "
+					+ "zstd-jni on the class path");
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Returns a channel reading the decompressed bytes of in, that fills as
+	 * much of the (heap) buffer it is given as in can provide in one read.
+	 * Unlike Channels.newChannel, it does not limit reads to a few kilobytes.
+	 */
+	private static ReadableByteChannel inflated(final InputStream in) {
+		return new ReadableByteChannel() {
+			// whether the channel is open
+			private boolean open = true;
+
+			@Override
+			public int read(ByteBuffer dst) throws IOException {
+				int n = in.read(dst.array(), dst.arrayOffset()
+						+ dst.position(), dst.remaining());
+				if (n > 0) {
+					dst.position(dst.position() + n);
+				}
+				return n;
+			}
+
+			@Override
+			public boolean isOpen() {
+				return open;
+			}
+
+			@Override
+			public void close() throws IOException {
+				open = false;
+				in.close();
+			}
+		};
+	}
+
+	/**
+	 * Advances to the next line.
+	 *
+	 * @return true if there is a next line, and false at the end of input
+	 * @throws IOException
+	 *             if the channel cannot be read
+	 */
+	boolean next() throws IOException {
+		length = 0;
+		lineOffset = consumed;
+		byte[] bytes = buffer.array();
+		while (true) {
+			if (!buffer.hasRemaining()) {
+				if (channel == null) {
+					// all of the array has been read
+					return length > 0;
+				}
+				buffer.clear();
+				int n = channel.read(buffer);
+				buffer.flip();
+				if (n < 0) {
+					// end of input: a last line without separator
+					return length > 0;
+				}
+			}
+			int from = buffer.position();
+			int limit = buffer.limit();
+			int i = from;
+			while (i < limit && bytes[i] != '\n') {
+				i++;
+			}
+			append(bytes, from, i - from);
+			consumed += i - from;
+			if (i < limit) {
+				// skip the separator
+				buffer.position(i + 1);
+				consumed++;
+				return true;
+			}
+			buffer.position(limit);
+		}
+	}
+
+	/**
+	 * Returns the length of the current line, in bytes.
+	 */
+	int length() {
+		return length;
+	}
+
+	/**
+	 * Returns the byte offset, from the start of the channel, of the current
+	 * line.
+	 */
+	long offset() {
+		return lineOffset;
+	}
+
+	/**
+	 * Returns the current line as a string.
+	 */
+	String text() {
+		return text(0, length);
+	}
+
+	/**
+	 * Returns bytes from (inclusive) to to (exclusive) of the current line as
+	 * a string.
+	 */
+	String text(int from, int to) {
+		return new String(line, from, to - from, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the position of the first occurrence of the two byte separator
+	 * (first, second) in the current line at or after from, or -1 if there is
+	 * none.
+	 */
+	int indexOf(char first, char second, int from) {
+		for (int i = from; i < length - 1; i++) {
+			if (line[i] == first && line[i + 1] == second) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Parses bytes from (inclusive) to to (exclusive) of the current line as
+	 * a decimal integer with an optional leading '+' or '-' and no
+	 * whitespace, as Scanner.nextInt accepts.
+	 *
+	 * @return the integer, or NOT_AN_INT if the bytes are not such an
+	 *         integer or it does not fit in an int
+	 */
+	long parseInt(int from, int to) {
+		boolean negative = from < to && line[from] == '-';
+		if (from < to && (negative || line[from] == '+')) {
+			from++;
+		}
+		if (from >= to) {
+			return NOT_AN_INT;
+		}
+		long value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) {
+				return NOT_AN_INT;
+			}
+			value = value * 10 + digit;
+			if (value > Integer.MAX_VALUE + 1L) {
+				return NOT_AN_INT;
+			}
+		}
+		value = negative ? -value : value;
+		return value > Integer.MAX_VALUE ? NOT_AN_INT : value;
+	}
+
+	/**
+	 * Closes the channel, if there is one.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Appends count bytes of source, starting at from, to the current line.
+	 */
+	private void append(byte[] source, int from, int count) {
+		if (length + count > line.length) {
+			byte[] bigger = new byte[Math.max(line.length * 2, length + count)];
+			System.arraycopy(line, 0, bigger, 0, length);
+			line = bigger;
+		}
+		System.arraycopy(source, from, line, length, count);
+		length += count;
+	}
+}
@@ -0,0 +1,100 @@
+package planner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A small least-recently-used cache of the load vectors a venue generates for
+ * different event sizes.
+ * </p>
+ *
+ * <p>
+ * Each venue owns one cache. Hit and miss counts are shared by all caches so
+ * the overall effectiveness of the caching can be monitored.
+ * </p>
+ */
+public final class LoadCache {
+
+	// Maximum number of event sizes remembered per venue
+	static final int MAX_ENTRIES = 32;
+
+	// number of lookups answered from a cache, over all venues
+	private static final AtomicLong hits = new AtomicLong();
+	// number of lookups that had to compute the load vector
+	private static final AtomicLong misses = new AtomicLong();
+
+	// load vectors by event size, in least-recently-used order
+	private final Map<Integer, LoadVector> entries =
+			new LinkedHashMap<Integer, LoadVector>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<Integer, LoadVector> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * Returns the cached load vector for the given event size, or null if
+	 * there is none. Updates the hit and miss counts.
+	 */
+	synchronized LoadVector get(int size) {
+		LoadVector loads = entries.get(size);
+		if (loads == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return loads;
+	}
+
+	/**
+	 * Caches the load vector for the given event size, evicting the least
+	 * recently used entry if the cache is full.
+	 */
+	synchronized void put(int size, LoadVector loads) {
+		entries.put(size, loads);
+	}
+
+	/**
+	 * Returns the number of load vector lookups that were answered from a
+	 * cache.
+	 *
+	 * @return the total number of cache hits
+	 */
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of load vector lookups that had to be computed.
+	 *
+	 * @return the total number of cache misses
+	 */
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the fraction of load vector lookups answered from a cache, or
+	 * zero if there have been no lookups.
+	 *
+	 * @return the cache hit rate, between 0 and 1
+	 */
+	public static double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	/**
+	 * Resets the hit and miss counts to zero.
+	 */
+	public static void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+	}
+}
@@ -0,0 +1,152 @@
+package planner;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * The traffic on one corridor over time, as a segment tree over the times
+ * [0, ScheduledEvent.MAX_TIME) supporting adding traffic to an interval of
+ * time and finding the largest traffic during an interval of time.
+ * </p>
+ *
+ * <p>
+ * Nodes are only created for the intervals that events actually start and
+ * end in, so a timeline with n events has O(n log MAX_TIME) nodes, and each
+ * operation visits O(log MAX_TIME) of them. The nodes are kept in parallel
+ * arrays rather than as objects.
+ * </p>
+ */
+final class LoadTimeline {
+
+	// number of bits of a time; the root covers [0, 1 << BITS)
+	private static final int BITS = 40;
+
+	// children of each node; 0 means no child (the root is never a child)
+	private int[] left = new int[64];
+	private int[] right = new int[64];
+	// traffic added to the whole interval of each node
+	private long[] added = new long[64];
+	// largest traffic within the interval of each node, including added
+	// but not the traffic added to the node's ancestors
+	private long[] max = new long[64];
+	// number of nodes in use; node 0 is the root
+	private int count = 1;
+	/*
+	 * Invariant: for each node n < count, max[n] == added[n] + the larger of
+	 * max[left[n]] and max[right[n]], where a missing child counts as 0
+	 */
+
+	/**
+	 * Adds traffic to the interval [start, end).
+	 *
+	 * @param start
+	 *            start of the interval (inclusive), 0 &lt;= start
+	 * @param end
+	 *            end of the interval (exclusive), end &lt;=
+	 *            ScheduledEvent.MAX_TIME
+	 * @param traffic
+	 *            the traffic to add (negative to remove traffic)
+	 */
+	void add(long start, long end, long traffic) {
+		add(0, 0, 1L << BITS, start, end, traffic);
+	}
+
+	/**
+	 * Returns the largest traffic at any time in the interval [start, end).
+	 *
+	 * @param start
+	 *            start of the interval (inclusive), 0 &lt;= start
+	 * @param end
+	 *            end of the interval (exclusive), end &lt;=
+	 *            ScheduledEvent.MAX_TIME
+	 * @return the peak traffic during the interval
+	 */
+	long max(long start, long end) {
+		return max(0, 0, 1L << BITS, start, end);
+	}
+
+	/**
+	 * Returns the largest traffic at any time.
+	 *
+	 * @return the peak traffic
+	 */
+	long max() {
+		return max[0];
+	}
+
+	/**
+	 * Adds traffic to [start, end) within the interval [lo, hi) of node.
+	 *
+	 * @require start < end && [start, end) overlaps [lo, hi)
+	 */
+	private void add(int node, long lo, long hi, long start, long end,
+			long traffic) {
+		if (start <= lo && hi <= end) {
+			added[node] += traffic;
+			max[node] += traffic;
+			return;
+		}
+		long mid = (lo + hi) >>> 1;
+		if (start < mid) {
+			if (left[node] == 0) {
+				// (newNode may replace the array, so call it first)
+				int child = newNode();
+				left[node] = child;
+			}
+			add(left[node], lo, mid, start, end, traffic);
+		}
+		if (mid < end) {
+			if (right[node] == 0) {
+				// (newNode may replace the array, so call it first)
+				int child = newNode();
+				right[node] = child;
+			}
+			add(right[node], mid, hi, start, end, traffic);
+		}
+		max[node] = added[node]
+				+ Math.max(childMax(left[node]), childMax(right[node]));
+	}
+
+	/**
+	 * Returns the largest traffic in [start, end) within the interval
+	 * [lo, hi) of node, excluding the traffic added to its ancestors.
+	 *
+	 * @require start < end && [start, end) overlaps [lo, hi)
+	 */
+	private long max(int node, long lo, long hi, long start, long end) {
+		if (start <= lo && hi <= end) {
+			return max[node];
+		}
+		long mid = (lo + hi) >>> 1;
+		long best = Long.MIN_VALUE;
+		if (start < mid) {
+			best = left[node] == 0 ? 0 : max(left[node], lo, mid, start, end);
+		}
+		if (mid < end) {
+			best = Math.max(best, right[node] == 0 ? 0
+					: max(right[node], mid, hi, start, end));
+		}
+		return added[node] + best;
+	}
+
+	/**
+	 * Returns the max of a child, or 0 if there is no child.
+	 */
+	private long childMax(int child) {
+		return child == 0 ? 0 : max[child];
+	}
+
+	/**
+	 * Returns a new node with no children and no traffic.
+	 */
+	private int newNode() {
+		if (count == left.length) {
+			int length = left.length * 2;
+			left = Arrays.copyOf(left, length);
+			right = Arrays.copyOf(right, length);
+			added = Arrays.copyOf(added, length);
+			max = Arrays.copyOf(max, length);
+		}
+		return count++;
+	}
+}
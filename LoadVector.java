@@ -0,0 +1,96 @@
+package planner;
+
+/**
+ * <p>
+ * An immutable list of corridors together with the traffic generated on each
+ * of them, e.g. by hosting an event of a particular size at a venue.
+ * </p>
+ *
+ * <p>
+ * Unlike Traffic, a load vector is a pair of plain arrays, so it can be
+ * shared between callers and iterated without allocating. The corridors are
+ * interned (see CorridorPool) and appear in their natural order.
+ * </p>
+ */
+public final class LoadVector {
+
+	// corridors with traffic, in natural order
+	private final Corridor[] corridors;
+	// traffic on each corridor
+	private final int[] loads;
+	/*
+	 * Invariant: corridors.length == loads.length && no corridor is null
+	 * && every load >= 0
+	 */
+
+	/**
+	 * Creates a load vector from parallel arrays. The arrays are not copied
+	 * and must not be modified afterwards.
+	 */
+	LoadVector(Corridor[] corridors, int[] loads) {
+		this.corridors = corridors;
+		this.loads = loads;
+	}
+
+	/**
+	 * Returns the number of corridors in this load vector.
+	 *
+	 * @return the number of corridors
+	 */
+	public int size() {
+		return corridors.length;
+	}
+
+	/**
+	 * Returns the i'th corridor of this load vector.
+	 *
+	 * @param i
+	 *            the position of the corridor, 0 &lt;= i &lt; size()
+	 * @return the interned corridor at position i
+	 */
+	public Corridor getCorridor(int i) {
+		return corridors[i];
+	}
+
+	/**
+	 * Returns the traffic on the i'th corridor of this load vector.
+	 *
+	 * @param i
+	 *            the position of the corridor, 0 &lt;= i &lt; size()
+	 * @return the traffic on the corridor at position i
+	 */
+	public int getLoad(int i) {
+		return loads[i];
+	}
+
+	/**
+	 * Returns true if other has the same corridors, with the same traffic, in
+	 * the same order as this load vector.
+	 */
+	boolean sameLoads(LoadVector other) {
+		if (other.corridors.length != corridors.length) {
+			return false;
+		}
+		for (int i = 0; i < corridors.length; i++) {
+			// interned corridors are equal only if identical
+			if (other.corridors[i] != corridors[i]
+					|| other.loads[i] != loads[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a new Traffic object recording the traffic in this load vector.
+	 *
+	 * @return the traffic described by this load vector
+	 */
+	public Traffic toTraffic() {
+		Traffic traffic = new Traffic();
+		for (int i = 0; i < corridors.length; i++) {
+			traffic.updateTraffic(corridors[i], loads[i]);
+		}
+		return traffic;
+	}
+}
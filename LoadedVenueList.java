@@ -0,0 +1,46 @@
+package planner;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An unmodifiable VenueList of venues that have all been read already, which
+ * keeps no file open.
+ */
+final class LoadedVenueList extends AbstractList<Venue>
+		implements VenueList, RandomAccess {
+
+	// the venues
+	private final List<Venue> venues;
+	/*
+	 * Invariant: venues != null
+	 */
+
+	/**
+	 * Creates a list of the given venues, which must not be changed later.
+	 *
+	 * @param venues
+	 *            the venues
+	 */
+	LoadedVenueList(List<Venue> venues) {
+		this.venues = venues;
+	}
+
+	@Override
+	public Venue get(int index) {
+		return venues.get(index);
+	}
+
+	@Override
+	public int size() {
+		return venues.size();
+	}
+
+	/**
+	 * Does nothing, as no file is kept open.
+	 */
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,289 @@
+package planner;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Decides, one request at a time, whether to accept an event and which venue
+ * to host it at, as the requests arrive, rather than allocating a whole list
+ * of events at once.
+ * </p>
+ *
+ * <p>
+ * An event is accepted if some free venue can host it safely, i.e. the
+ * venue is large enough (as for Venue.canHost) and the traffic the event
+ * would generate there (as for Venue.getTraffic) keeps every corridor within
+ * its capacity, given the traffic of the events already accepted. It is
+ * placed at the best such venue according to a scoring policy. Accepted
+ * events can later be released, e.g. when a booking is cancelled.
+ * </p>
+ *
+ * <p>
+ * To keep each decision fast, the free venues are examined in ascending
+ * order of capacity, starting at the size of the event, and at most
+ * scanLimit of them are examined; the policy compares at most candidates of
+ * those that could host the event safely. Checking a venue only looks at
+ * its own corridors, against the traffic on each corridor kept in an array.
+ * </p>
+ */
+public class OnlineAllocator {
+
+	/**
+	 * A policy for choosing between the free venues that could safely host
+	 * an event.
+	 */
+	public enum Policy {
+		/**
+		 * Chooses the venue of smallest capacity, leaving larger venues free
+		 * for larger events.
+		 */
+		BEST_FIT(true) {
+			@Override
+			long score(OnlineAllocator allocator, int row, int size) {
+				return allocator.table.capacity(row);
+			}
+		},
+
+		/**
+		 * Chooses the venue whose busiest corridor would be least loaded,
+		 * relative to its capacity, after the event is placed there,
+		 * spreading the traffic over the corridors.
+		 */
+		LEAST_LOADED(false) {
+			@Override
+			long score(OnlineAllocator allocator, int row, int size) {
+				return allocator.peakLoad(row, size);
+			}
+		};
+
+		// true if scores never decrease in order of capacity, so the first
+		// venue that can host an event safely has the best score
+		private final boolean firstIsBest;
+
+		Policy(boolean firstIsBest) {
+			this.firstIsBest = firstIsBest;
+		}
+
+		/**
+		 * Returns the score of hosting an event of the given size at the
+		 * venue of the given row of the allocator's table; the venue with
+		 * the lowest score is chosen.
+		 */
+		abstract long score(OnlineAllocator allocator, int row, int size);
+	}
+
+	// default number of safe venues compared by the policy
+	public static final int DEFAULT_CANDIDATES = 8;
+	// default number of free venues examined for each request
+	public static final int DEFAULT_SCAN_LIMIT = 1024;
+
+	// the venues
+	private final VenueTable table;
+	// the venues that are not hosting an event
+	private final CapacityIndex free;
+	// capacity of each corridor, by corridor id
+	private final int[] corridorCaps;
+	// traffic on each corridor, by corridor id
+	private final int[] loads;
+	// the venue hosting each accepted event
+	private final Map<Event, Venue> allocations;
+	// the policy choosing between venues
+	private final Policy policy;
+	// largest number of safe venues compared for a request
+	private final int candidates;
+	// largest number of free venues examined for a request
+	private final int scanLimit;
+	/*
+	 * Invariant: loads holds the traffic of the accepted events && every
+	 * load is within its corridor's capacity && free holds exactly the
+	 * venues of table not hosting an accepted event && candidates > 0 &&
+	 * scanLimit > 0
+	 */
+
+	/**
+	 * Creates an allocator for the given venues, none of which host an
+	 * event, with the default number of candidates and scan limit.
+	 *
+	 * @param venues
+	 *            the venues events can be placed at
+	 * @param policy
+	 *            the policy choosing between venues
+	 * @throws NullPointerException
+	 *             if venues or policy is null
+	 */
+	public OnlineAllocator(List<Venue> venues, Policy policy) {
+		this(venues, policy, DEFAULT_CANDIDATES, DEFAULT_SCAN_LIMIT);
+	}
+
+	/**
+	 * Creates an allocator for the given venues, none of which host an
+	 * event.
+	 *
+	 * @param venues
+	 *            the venues events can be placed at
+	 * @param policy
+	 *            the policy choosing between venues
+	 * @param candidates
+	 *            the largest number of venues that could host an event
+	 *            safely to compare for each request
+	 * @param scanLimit
+	 *            the largest number of free venues to examine for each
+	 *            request
+	 * @throws NullPointerException
+	 *             if venues or policy is null
+	 * @throws IllegalArgumentException
+	 *             if candidates or scanLimit is not positive
+	 */
+	public OnlineAllocator(List<Venue> venues, Policy policy, int candidates,
+			int scanLimit) {
+		if (policy == null) {
+			throw new NullPointerException("policy cannot be null");
+		}
+		if (candidates <= 0 || scanLimit <= 0) {
+			throw new IllegalArgumentException(
+					"candidates and scanLimit must be positive");
+		}
+		this.table = new VenueTable(venues);
+		this.free = new CapacityIndex(table);
+		this.corridorCaps = new int[CorridorPool.size()];
+		for (int id = 0; id < corridorCaps.length; id++) {
+			corridorCaps[id] = CorridorPool.get(id).getCapacity();
+		}
+		this.loads = new int[corridorCaps.length];
+		this.allocations = new HashMap<Event, Venue>();
+		this.policy = policy;
+		this.candidates = candidates;
+		this.scanLimit = scanLimit;
+	}
+
+	/**
+	 * Accepts the event, placing it at the best free venue that can host it
+	 * safely, or rejects it if no such venue is found.
+	 *
+	 * @param event
+	 *            the event requested
+	 * @return the venue the event was placed at, or null if it was rejected
+	 * @throws IllegalStateException
+	 *             if the event has already been accepted
+	 */
+	public Venue offer(Event event) {
+		if (allocations.containsKey(event)) {
+			throw new IllegalStateException("event is already allocated");
+		}
+		int size = event.getSize();
+		int best = -1;
+		long bestScore = Long.MAX_VALUE;
+		int safe = 0;
+		int examined = 0;
+		for (long key : free.keysFor(size)) {
+			if (examined++ == scanLimit) {
+				break;
+			}
+			int row = CapacityIndex.rowOf(key);
+			if (!fits(row, size)) {
+				continue;
+			}
+			long score = policy.score(this, row, size);
+			if (score < bestScore) {
+				best = row;
+				bestScore = score;
+			}
+			if (policy.firstIsBest || ++safe == candidates) {
+				break;
+			}
+		}
+		if (best < 0) {
+			return null;
+		}
+		Venue venue = table.getVenue(best);
+		table.addTraffic(best, size, 1, loads);
+		free.remove(venue);
+		allocations.put(event, venue);
+		return venue;
+	}
+
+	/**
+	 * Releases an accepted event, freeing its venue and removing its
+	 * traffic.
+	 *
+	 * @param event
+	 *            the event to release
+	 * @return the venue that was hosting the event, or null if it had not
+	 *         been accepted
+	 */
+	public Venue release(Event event) {
+		Venue venue = allocations.remove(event);
+		if (venue != null) {
+			table.addTraffic(table.rowOf(venue), event.getSize(), -1, loads);
+			free.add(venue);
+		}
+		return venue;
+	}
+
+	/**
+	 * Returns the venue hosting the given event, or null if it has not been
+	 * accepted.
+	 *
+	 * @param event
+	 *            an event
+	 * @return the event's venue, or null
+	 */
+	public Venue getVenue(Event event) {
+		return allocations.get(event);
+	}
+
+	/**
+	 * Returns the number of events accepted and not released.
+	 *
+	 * @return the number of allocations
+	 */
+	public int size() {
+		return allocations.size();
+	}
+
+	/**
+	 * Returns the traffic generated by the accepted events.
+	 *
+	 * @return a copy of the traffic on every corridor with traffic
+	 */
+	public Traffic getTraffic() {
+		Traffic traffic = new Traffic();
+		for (int id = 0; id < loads.length; id++) {
+			if (loads[id] > 0) {
+				traffic.updateTraffic(CorridorPool.get(id), loads[id]);
+			}
+		}
+		return traffic;
+	}
+
+	/**
+	 * Returns true if an event of the given size at row would keep each of
+	 * the row's corridors within its capacity.
+	 */
+	private boolean fits(int row, int size) {
+		for (int k = table.start(row); k < table.end(row); k++) {
+			int id = table.corridorId(k);
+			if (loads[id] + table.scaledTraffic(row, k, size)
+					> corridorCaps[id]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the largest load, in millionths of the corridor's capacity, of
+	 * the corridors of row once an event of the given size is placed there.
+	 */
+	private long peakLoad(int row, int size) {
+		long peak = 0;
+		for (int k = table.start(row); k < table.end(row); k++) {
+			int id = table.corridorId(k);
+			long load = loads[id] + table.scaledTraffic(row, k, size);
+			peak = Math.max(peak, load * 1000000 / corridorCaps[id]);
+		}
+		return peak;
+	}
+}
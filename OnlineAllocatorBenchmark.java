@@ -0,0 +1,94 @@
+package planner;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <p>
+ * Measures how many requests per second an OnlineAllocator decides.
+ * </p>
+ *
+ * <p>
+ * Requests for events of random sizes arrive in a stream. Each accepted event
+ * is released again once a fixed number of later events have been accepted,
+ * as bookings end, so the allocator runs at a steady number of allocations.
+ * The stream is run once to warm up and then again to be timed.
+ * </p>
+ */
+public class OnlineAllocatorBenchmark {
+
+	// default number of requests timed
+	private static final int DEFAULT_REQUESTS = 1000000;
+	// default largest size of a requested event
+	private static final int DEFAULT_MAX_SIZE = 200;
+
+	/**
+	 * Runs the benchmark. The arguments are the venue file (default
+	 * venues.txt), the policy (default BEST_FIT), the number of requests
+	 * (default 1000000), the number of events held at once (default a
+	 * hundredth of the venues) and the largest event size (default 200).
+	 *
+	 * @param args
+	 *            optional venue file, policy, requests, active events and
+	 *            largest size
+	 * @throws IOException
+	 *             if the venue file cannot be read
+	 * @throws FormatException
+	 *             if the venue file is invalid
+	 */
+	public static void main(String[] args) throws IOException,
+	FormatException {
+		String fileName = args.length > 0 ? args[0] : "venues.txt";
+		OnlineAllocator.Policy policy = args.length > 1
+				? OnlineAllocator.Policy.valueOf(args[1])
+				: OnlineAllocator.Policy.BEST_FIT;
+		int requests = args.length > 2 ? Integer.parseInt(args[2])
+				: DEFAULT_REQUESTS;
+		List<Venue> venues = VenueCatalogue.read(fileName);
+		int active = args.length > 3 ? Integer.parseInt(args[3])
+				: Math.max(1, venues.size() / 100);
+		int maxSize = args.length > 4 ? Integer.parseInt(args[4])
+				: DEFAULT_MAX_SIZE;
+
+		run(venues, policy, requests, active, maxSize);
+		long start = System.nanoTime();
+		int accepted = run(venues, policy, requests, active, maxSize);
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println(policy + ": " + requests + " requests over "
+				+ venues.size() + " venues, " + active + " held at once");
+		System.out.println(String.format("%.0f decisions/s, %.1f%% accepted",
+				requests * 1e9 / elapsed, accepted * 100.0 / requests));
+	}
+
+	/**
+	 * Offers a stream of requests to a new allocator, releasing each accepted
+	 * event once active more have been accepted, and returns the number of
+	 * requests accepted.
+	 *
+	 * @require venues != null && policy != null && requests >= 0 &&
+	 *          active > 0 && maxSize > 0
+	 */
+	private static int run(List<Venue> venues, OnlineAllocator.Policy policy,
+			int requests, int active, int maxSize) {
+		OnlineAllocator allocator = new OnlineAllocator(venues, policy);
+		Random random = new Random(1);
+		// the accepted events, in a ring of the last active accepted
+		Event[] held = new Event[active];
+		int next = 0;
+		int accepted = 0;
+		for (int i = 0; i < requests; i++) {
+			Event event = new Event("request" + i, 1 + random.nextInt(maxSize));
+			if (allocator.offer(event) != null) {
+				if (held[next] != null) {
+					allocator.release(held[next]);
+				}
+				held[next] = event;
+				next = (next + 1) % active;
+				accepted++;
+			}
+		}
+		return accepted;
+	}
+}
@@ -0,0 +1,273 @@
+package planner;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * A schedule of events at venues over time, e.g. over a whole season.
+ * </p>
+ *
+ * <p>
+ * Unlike an allocation, in which every event takes place at once, each event
+ * of a schedule has a time slot (see ScheduledEvent). A venue can host
+ * several events as long as their time slots do not overlap. The traffic an
+ * event generates is on its venue's corridors only during its time slot, so
+ * a schedule is safe if at no time does the traffic on any corridor exceed
+ * the corridor's capacity.
+ * </p>
+ *
+ * <p>
+ * The traffic on each corridor is kept over time in a segment tree (see
+ * LoadTimeline), so checking whether an event can be scheduled only looks
+ * at the event's own corridors during its own time slot, taking time
+ * logarithmic in the length of the timeline, however many events there are.
+ * </p>
+ */
+public class Schedule {
+
+	// the venue hosting each scheduled event, in the order they were added
+	private final Map<ScheduledEvent, Venue> bookings;
+	// the events hosted by each venue with any, by start time
+	private final Map<Venue, TreeMap<Long, ScheduledEvent>> venueBookings;
+	// the traffic over time on each corridor, by corridor id; null if no
+	// event has generated traffic on the corridor
+	private LoadTimeline[] timelines;
+	// ids of the corridors whose capacity is exceeded at some time
+	private final BitSet overloaded;
+	/*
+	 * Invariant: the events hosted by each venue do not overlap && for each
+	 * corridor, timelines[corridor id] holds the sum of the traffic of the
+	 * booked events over time && overloaded holds exactly the ids of the
+	 * corridors whose timeline has a peak above their capacity
+	 */
+
+	/**
+	 * Creates an empty schedule.
+	 */
+	public Schedule() {
+		this.bookings = new LinkedHashMap<ScheduledEvent, Venue>();
+		this.venueBookings = new HashMap<Venue, TreeMap<Long, ScheduledEvent>>();
+		this.timelines = new LoadTimeline[0];
+		this.overloaded = new BitSet();
+	}
+
+	/**
+	 * Returns the bookings of events to venues, in the order in which they
+	 * were added.
+	 *
+	 * @return an unmodifiable view of the bookings
+	 */
+	public Map<ScheduledEvent, Venue> getBookings() {
+		return Collections.unmodifiableMap(bookings);
+	}
+
+	/**
+	 * Returns the venue hosting the given event, or null if it is not
+	 * scheduled.
+	 *
+	 * @param event
+	 *            a scheduled event
+	 * @return the venue hosting event, or null
+	 */
+	public Venue getVenue(ScheduledEvent event) {
+		return bookings.get(event);
+	}
+
+	/**
+	 * Returns true if venue hosts no event whose time slot overlaps the time
+	 * slot of event.
+	 *
+	 * @param event
+	 *            an event with a time slot
+	 * @param venue
+	 *            a venue
+	 * @return true if the venue is free during the event
+	 */
+	public boolean isFree(Venue venue, ScheduledEvent event) {
+		return findClash(venue, event) == null;
+	}
+
+	/**
+	 * Returns the largest traffic on the given corridor at any time in the
+	 * interval [start, end).
+	 *
+	 * @param corridor
+	 *            a corridor
+	 * @param start
+	 *            start of the interval (inclusive), 0 &lt;= start
+	 * @param end
+	 *            end of the interval (exclusive), start &lt; end &lt;=
+	 *            ScheduledEvent.MAX_TIME
+	 * @return the peak traffic on the corridor during the interval
+	 */
+	public int getPeakTraffic(Corridor corridor, long start, long end) {
+		LoadTimeline timeline = timeline(corridor);
+		return timeline == null ? 0 : (int) timeline.max(start, end);
+	}
+
+	/**
+	 * Returns true if the given event can be scheduled at the given venue:
+	 * the venue is large enough for the event and is free during it, and the
+	 * traffic the event would generate keeps every corridor within its
+	 * capacity throughout its time slot. Nothing is changed.
+	 *
+	 * @param event
+	 *            the event to schedule
+	 * @param venue
+	 *            the venue to host it
+	 * @return true if scheduling event at venue would be safe
+	 */
+	public boolean canSchedule(ScheduledEvent event, Venue venue) {
+		return venue.canHost(event.getEvent()) && isFree(venue, event)
+				&& findOverflow(event, venue) == null;
+	}
+
+	/**
+	 * Returns a corridor whose capacity would be exceeded at some time if
+	 * the given event were scheduled at the given venue, or null if there is
+	 * none. Only the corridors the venue generates traffic on are checked,
+	 * during the event's time slot. Nothing is changed.
+	 *
+	 * @param event
+	 *            the event to schedule
+	 * @param venue
+	 *            a venue that can host the event
+	 * @return a corridor that would overflow, or null
+	 * @throws IllegalArgumentException
+	 *             if the size of the event exceeds the capacity of the venue
+	 */
+	public Corridor findOverflow(ScheduledEvent event, Venue venue) {
+		LoadVector loads = venue.getLoads(event.getEvent());
+		for (int i = 0; i < loads.size(); i++) {
+			Corridor corridor = loads.getCorridor(i);
+			if (getPeakTraffic(corridor, event.getStart(), event.getEnd())
+					+ loads.getLoad(i) > corridor.getCapacity()) {
+				return corridor;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Schedules the given event at the given venue, adding its traffic to
+	 * the venue's corridors during its time slot. As for allocations, the
+	 * traffic is not required to be safe (see canSchedule and isSafe).
+	 *
+	 * @param event
+	 *            the event to schedule
+	 * @param venue
+	 *            the venue to host it
+	 * @throws IllegalArgumentException
+	 *             if the event is already scheduled, the venue is too small
+	 *             for it, or the venue hosts another event at the same time
+	 */
+	public void add(ScheduledEvent event, Venue venue) {
+		if (bookings.containsKey(event)) {
+			throw new IllegalArgumentException("event is already scheduled");
+		}
+		if (!venue.canHost(event.getEvent())) {
+			throw new IllegalArgumentException(
+					"venue capacity is too small for the event");
+		}
+		ScheduledEvent clash = findClash(venue, event);
+		if (clash != null) {
+			throw new IllegalArgumentException("venue already hosts " + clash);
+		}
+		bookings.put(event, venue);
+		TreeMap<Long, ScheduledEvent> hosted = venueBookings.get(venue);
+		if (hosted == null) {
+			hosted = new TreeMap<Long, ScheduledEvent>();
+			venueBookings.put(venue, hosted);
+		}
+		hosted.put(event.getStart(), event);
+		addTraffic(event, venue, 1);
+	}
+
+	/**
+	 * Removes the given event from the schedule, if it is scheduled.
+	 *
+	 * @param event
+	 *            the event to remove
+	 * @return the venue that was hosting the event, or null if it was not
+	 *         scheduled
+	 */
+	public Venue remove(ScheduledEvent event) {
+		Venue venue = bookings.remove(event);
+		if (venue == null) {
+			return null;
+		}
+		TreeMap<Long, ScheduledEvent> hosted = venueBookings.get(venue);
+		hosted.remove(event.getStart());
+		if (hosted.isEmpty()) {
+			venueBookings.remove(venue);
+		}
+		addTraffic(event, venue, -1);
+		return venue;
+	}
+
+	/**
+	 * Returns true if at no time does the traffic on any corridor exceed its
+	 * capacity.
+	 *
+	 * @return true if the schedule is safe
+	 */
+	public boolean isSafe() {
+		return overloaded.isEmpty();
+	}
+
+	/**
+	 * Returns an event hosted by venue whose time slot overlaps that of
+	 * event, or null if there is none. As the events hosted by a venue do not
+	 * overlap, only the last to start before event ends can overlap it.
+	 */
+	private ScheduledEvent findClash(Venue venue, ScheduledEvent event) {
+		TreeMap<Long, ScheduledEvent> hosted = venueBookings.get(venue);
+		if (hosted == null) {
+			return null;
+		}
+		Map.Entry<Long, ScheduledEvent> before =
+				hosted.lowerEntry(event.getEnd());
+		if (before != null && before.getValue().overlaps(event)) {
+			return before.getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * Adds (sign 1) or removes (sign -1) the traffic of event at venue to
+	 * the timelines of the venue's corridors, keeping overloaded up to date.
+	 */
+	private void addTraffic(ScheduledEvent event, Venue venue, int sign) {
+		LoadVector loads = venue.getLoads(event.getEvent());
+		for (int i = 0; i < loads.size(); i++) {
+			Corridor corridor = loads.getCorridor(i);
+			int id = corridor.getId();
+			if (id >= timelines.length) {
+				timelines = Arrays.copyOf(timelines,
+						Math.max(id + 1, timelines.length * 2));
+			}
+			if (timelines[id] == null) {
+				timelines[id] = new LoadTimeline();
+			}
+			timelines[id].add(event.getStart(), event.getEnd(),
+					sign * loads.getLoad(i));
+			overloaded.set(id, timelines[id].max() > corridor.getCapacity());
+		}
+	}
+
+	/**
+	 * Returns the timeline of the given corridor, or null if there has never
+	 * been traffic on it. The corridor need not be interned, and is not
+	 * interned by the lookup.
+	 */
+	private LoadTimeline timeline(Corridor corridor) {
+		int id = CorridorPool.idOf(corridor);
+		return id >= 0 && id < timelines.length ? timelines[id] : null;
+	}
+}
@@ -0,0 +1,123 @@
+package planner;
+
+/**
+ * <p>
+ * An immutable event together with the time slot in which it takes place.
+ * </p>
+ *
+ * <p>
+ * The time slot is the half-open interval [start, end), so an event ending
+ * at time t does not overlap an event starting at time t. Times are
+ * non-negative and in any unit used consistently by a schedule, e.g. minutes
+ * since the start of a season.
+ * </p>
+ */
+public final class ScheduledEvent {
+
+	// exclusive upper bound on times
+	public static final long MAX_TIME = 1L << 40;
+
+	// the event
+	private final Event event;
+	// start time (inclusive) and end time (exclusive) of the event
+	private final long start;
+	private final long end;
+	/*
+	 * Invariant: event != null && 0 <= start < end <= MAX_TIME
+	 */
+
+	/**
+	 * Creates a new scheduled event.
+	 *
+	 * @param event
+	 *            the event
+	 * @param start
+	 *            the time the event starts
+	 * @param end
+	 *            the time the event ends
+	 * @throws NullPointerException
+	 *             if event is null
+	 * @throws IllegalArgumentException
+	 *             unless 0 &lt;= start &lt; end &lt;= MAX_TIME
+	 */
+	public ScheduledEvent(Event event, long start, long end) {
+		if (event == null) {
+			throw new NullPointerException("event cannot be null");
+		}
+		if (start < 0 || start >= end || end > MAX_TIME) {
+			throw new IllegalArgumentException("invalid time slot");
+		}
+		this.event = event;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Returns the event.
+	 *
+	 * @return the event
+	 */
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * Returns the time the event starts.
+	 *
+	 * @return the start time (inclusive)
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the time the event ends.
+	 *
+	 * @return the end time (exclusive)
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns true if the time slot of this event overlaps the time slot of
+	 * other.
+	 *
+	 * @param other
+	 *            another scheduled event
+	 * @return true if the two events take place at the same time, at least
+	 *         in part
+	 */
+	public boolean overlaps(ScheduledEvent other) {
+		return start < other.end && other.start < end;
+	}
+
+	/**
+	 * Returns the string representation of the event followed by its time
+	 * slot, e.g. "Concert (100) [60, 180)".
+	 */
+	@Override
+	public String toString() {
+		return event + " [" + start + ", " + end + ")";
+	}
+
+	/**
+	 * Two scheduled events are equal if their events are equal and they have
+	 * the same time slot.
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof ScheduledEvent)) {
+			return false;
+		}
+		ScheduledEvent other = (ScheduledEvent) object;
+		return event.equals(other.event) && start == other.start
+				&& end == other.end;
+	}
+
+	@Override
+	public int hashCode() {
+		return (event.hashCode() * 31 + Long.hashCode(start)) * 31
+				+ Long.hashCode(end);
+	}
+}
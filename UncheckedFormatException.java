@@ -0,0 +1,39 @@
+package planner;
+
+/**
+ * <p>
+ * Wraps a FormatException with an unchecked exception.
+ * </p>
+ *
+ * <p>
+ * Thrown where a format error is found by a method that cannot throw checked
+ * exceptions, e.g. when a venue of a lazily read venue file is parsed on
+ * first access through the List interface.
+ * </p>
+ */
+public class UncheckedFormatException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Creates an unchecked exception wrapping the given format exception.
+	 *
+	 * @param cause
+	 *            the format exception
+	 * @throws NullPointerException
+	 *             if cause is null
+	 */
+	public UncheckedFormatException(FormatException cause) {
+		super(cause.getMessage(), cause);
+	}
+
+	/**
+	 * Returns the format exception wrapped by this exception.
+	 *
+	 * @return the format exception which is the cause of this exception
+	 */
+	@Override
+	public synchronized FormatException getCause() {
+		return (FormatException) super.getCause();
+	}
+}
@@ -1,5 +1,6 @@
 package planner;
 
+import java.util.Set;
 
 /**
  * <p>
@@ -29,11 +30,18 @@ package planner;
  */
 public class Venue {
 
-	private String name;  // venue name
-	private int capacity; // venue capacity
-	private Traffic capacityTraffic; // traffic generated by venue
+	private final String name;  // venue name
+	private final int capacity; // venue capacity
+	// traffic generated by venue, as a load vector of interned corridors
+	private final LoadVector capacityLoads;
+	// load vectors of recently requested event sizes
+	private final LoadCache loadCache = new LoadCache();
+	// 64-bit digest of name, capacity and capacity traffic
+	private final long fingerprint;
+	// hash code, derived from fingerprint
+	private final int hash;
 	/*
-	 * Invariant: Traffic and name are never equal to null
+	 * Invariant: capacityLoads and name are never equal to null
 	 * Venue capacity is greater than zero but less than or equal to
 	 * maximum event size
 	 */
@@ -67,15 +75,75 @@ public class Venue {
 		} else if (capacity <= 0) {
 			throw new IllegalArgumentException("capacity <= 0");
 		}
-		for (Corridor entry : capacityTraffic.getCorridorsWithTraffic()) {
+		Set<Corridor> corridors = capacityTraffic.getCorridorsWithTraffic();
+		Corridor[] interned = new Corridor[corridors.size()];
+		int[] loads = new int[corridors.size()];
+		int i = 0;
+		for (Corridor entry : corridors) {
 			if (capacityTraffic.getTraffic(entry) > capacity) {
 				throw new InvalidTrafficException("traffic exceeds "
 						+ "venue capacity");
 			}
+			interned[i] = entry.intern();
+			loads[i++] = capacityTraffic.getTraffic(entry);
 		}
 		this.name = name;
 		this.capacity = capacity;
-		this.capacityTraffic = capacityTraffic;
+		// copied, so later changes to the parameter do not affect this venue
+		this.capacityLoads = new LoadVector(interned, loads);
+		this.fingerprint = fingerprint(name, capacity, capacityLoads);
+		this.hash = (int) (fingerprint ^ (fingerprint >>> 32));
+	}
+
+	/**
+	 * Creates a venue whose capacity traffic is given as a load vector that
+	 * has already been validated: its corridors are interned, in natural
+	 * order, and none has traffic greater than capacity or equal to zero.
+	 */
+	Venue(String name, int capacity, LoadVector capacityLoads) {
+		this.name = name;
+		this.capacity = capacity;
+		this.capacityLoads = capacityLoads;
+		this.fingerprint = fingerprint(name, capacity, capacityLoads);
+		this.hash = (int) (fingerprint ^ (fingerprint >>> 32));
+	}
+
+	/**
+	 * Computes a 64-bit FNV-1a digest of everything that defines a venue's
+	 * equality: its name, its capacity, and each corridor and its traffic.
+	 */
+	private static long fingerprint(String name, int capacity,
+			LoadVector loads) {
+		long digest = mix(0xcbf29ce484222325L, name);
+		digest = mix(digest, capacity);
+		for (int i = 0; i < loads.size(); i++) {
+			Corridor corridor = loads.getCorridor(i);
+			digest = mix(digest, corridor.getStart().getName());
+			digest = mix(digest, corridor.getEnd().getName());
+			digest = mix(digest, corridor.getCapacity());
+			digest = mix(digest, loads.getLoad(i));
+		}
+		return digest;
+	}
+
+	/**
+	 * Adds the characters of a string (and its length) to an FNV-1a digest.
+	 */
+	private static long mix(long digest, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			digest = (digest ^ value.charAt(i)) * 0x100000001b3L;
+		}
+		return mix(digest, value.length());
+	}
+
+	/**
+	 * Adds an int to an FNV-1a digest.
+	 */
+	private static long mix(long digest, int value) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			digest = (digest ^ ((value >>> shift) & 0xff)) * 0x100000001b3L;
+		}
+		return digest;
 	}
 
 	/**
@@ -96,6 +164,28 @@ public class Venue {
 		return this.capacity;
 	}
 
+	/**
+	 * Returns a 64-bit digest of the name, capacity and capacity traffic of
+	 * this venue, computed when the venue was created. Equal venues have equal
+	 * fingerprints; unequal venues have equal fingerprints only with
+	 * negligible probability.
+	 *
+	 * @return the fingerprint of this venue
+	 */
+	public long getFingerprint() {
+		return this.fingerprint;
+	}
+
+	/**
+	 * Returns the traffic generated by hosting an event of size capacity at
+	 * this venue, as a load vector.
+	 *
+	 * @return the traffic generated by an event of maximum size
+	 */
+	LoadVector getCapacityLoads() {
+		return this.capacityLoads;
+	}
+
 	/**
 	 * Returns true if the size of the event is less than or equal to the
 	 * capacity of the venue, and false otherwise.
@@ -145,21 +235,60 @@ public class Venue {
 	 *             if the size of the event exceeds the capacity of the venue
 	 */
 	public Traffic getTraffic(Event event) {
-		int generated;
-		Traffic temp = new Traffic();
+		return getLoads(event).toTraffic();
+	}
+
+	/**
+	 * <p>
+	 * Returns the traffic that would be generated by hosting the given event
+	 * at this venue, as an immutable load vector.
+	 * </p>
+	 *
+	 * <p>
+	 * The load vector records the same traffic as getTraffic(event). Load
+	 * vectors for recently used event sizes are cached, so repeated calls for
+	 * events of the same size do not recompute the traffic.
+	 * </p>
+	 *
+	 * @param event
+	 *            the event for which the traffic will be generated
+	 * @return the traffic generated by hosting the given event at this venue
+	 * @throws NullPointerException
+	 *             if event is null
+	 * @throws IllegalArgumentException
+	 *             if the size of the event exceeds the capacity of the venue
+	 */
+	public LoadVector getLoads(Event event) {
 		if (event == null) {
 			throw new NullPointerException("event is null");
 		} else if (event.getSize() > this.capacity) {
 			throw new IllegalArgumentException("size of the event exceeds"
 					+ " venue capacity");
 		}
-		for (Corridor corridor : capacityTraffic.getCorridorsWithTraffic()) {
-			//traffic generated by the event for corridor ((K * X) / C)
-			generated = event.getSize() * capacityTraffic.getTraffic(corridor)
-					/ this.capacity;
-			temp.updateTraffic(corridor, generated);
+		return getLoads(event.getSize());
+	}
+
+	/**
+	 * Returns the load vector for an event of the given size, from the cache
+	 * if possible.
+	 *
+	 * @require size <= capacity
+	 */
+	LoadVector getLoads(int size) {
+		LoadVector loads = loadCache.get(size);
+		if (loads == null) {
+			int[] generated = new int[capacityLoads.size()];
+			Corridor[] corridors = new Corridor[capacityLoads.size()];
+			for (int i = 0; i < generated.length; i++) {
+				corridors[i] = capacityLoads.getCorridor(i);
+				//traffic generated by the event for corridor ((K * X) / C)
+				generated[i] = size * capacityLoads.getLoad(i)
+						/ this.capacity;
+			}
+			loads = new LoadVector(corridors, generated);
+			loadCache.put(size, loads);
 		}
-		return temp;
+		return loads;
 	}
 
 	/**
@@ -180,7 +309,7 @@ public class Venue {
 	public String toString() {
 		final String LINE_SEPARATOR = System.getProperty("line.separator");
 		return name + " (" + capacity + ")" + LINE_SEPARATOR
-				+ capacityTraffic.toString();
+				+ capacityLoads.toTraffic().toString();
 	}
 
 	/**
@@ -195,42 +324,40 @@ public class Venue {
 	 *
 	 * (iv) generates the same traffic as this venue for an event of maximum
 	 * size (capacity) at the venue. (The amount of traffic generated is the
-	 * same if it is the same according to the sameTraffic() method of the
-	 * Traffic class).
+	 * same if every corridor has the same amount of traffic in both).
 	 *
+	 * The venues' fingerprints are compared first, so unequal venues are
+	 * usually told apart without comparing their traffic.
 	 */
 	@Override
 	public boolean equals(Object object) {
-		Event temp = new Event("trial", this.getCapacity());
-		if (!(object instanceof Venue)) {
+		if (object == this) {
+			return true;
+		} else if (!(object instanceof Venue)) {
 			return false;
-		} else if (!((Venue)object).getName().equals(this.getName())) {
-			// unequal venue names
+		}
+		Venue other = (Venue) object;
+		if (other.fingerprint != this.fingerprint) {
+			// differ in name, capacity or traffic
 			return false;
-		} else if (((Venue)object).getCapacity() != this.getCapacity()) {
+		} else if (other.capacity != this.capacity) {
 			// capacity that is unequal to this venue's capacity
 			return false;
-		} else if (!((Venue)object).getTraffic(temp).sameTraffic(
-				this.getTraffic(temp))) {
-			// does not generate the same traffic as this venue
-			// for a max capacity event
+		} else if (!other.name.equals(this.name)) {
+			// unequal venue names
 			return false;
 		} else {
-			return true;
+			// same traffic as this venue for a max capacity event
+			return other.capacityLoads.sameLoads(this.capacityLoads);
 		}
 	}
 
 	/**
-	 * The following hash code override method computes a hash code
-	 * for each property that defines the Venue object and adds
-	 * it to the final hash code
+	 * The hash code is derived from the fingerprint of the venue, which
+	 * covers each property that defines the Venue object.
 	 */
 	@Override
 	public int hashCode() {
-		int hash = 7; //default primary number
-		hash = 19*hash + name.hashCode();
-		hash = 19*hash + capacity;
-		hash = 19*hash + this.capacityTraffic.toString().hashCode();
 		return hash;
 	}
 
@@ -247,7 +374,7 @@ public class Venue {
 	 * @return true if this class is internally consistent, and false otherwise.
 	 */
 	public boolean checkInvariant() {
-		if (name == null || capacityTraffic == null) {
+		if (name == null || capacityLoads == null) {
 			return false;
 		} else if (capacity <= 0) {
 			return false;
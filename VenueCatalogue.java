@@ -0,0 +1,330 @@
+package planner;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * <p>
+ * Reads venue files through a compiled binary snapshot, so that an unchanged
+ * file does not have to be parsed again.
+ * </p>
+ *
+ * <p>
+ * The first time a venue file is read, its venues are parsed with
+ * VenueReader and written to a snapshot file next to it (the file name with
+ * ".vcat" appended). Later reads load the snapshot instead, as long as the
+ * size and CRC-32 checksum of the venue file still match those recorded in
+ * the snapshot, and the snapshot's own checksum is correct. Otherwise the
+ * venue file is parsed again and the snapshot rewritten. The checksum of the
+ * venue file is compared rather than its last-modified time, which copies
+ * and file systems may preserve or round across edits.
+ * </p>
+ *
+ * <p>
+ * A snapshot consists of a header followed by a table of location names, a
+ * table of corridors (start location, end location, capacity), and one row
+ * per venue (name, capacity, and the corridors and traffic of an event of
+ * maximum size). Failing to write a snapshot is not an error: it only means
+ * the next read parses the venue file again.
+ * </p>
+ */
+public class VenueCatalogue {
+
+	// suffix added to a venue file's name to name its snapshot
+	static final String SUFFIX = ".vcat";
+	// first four bytes of every snapshot: "VCAT"
+	private static final int MAGIC = 0x56434154;
+	// version of the snapshot format
+	private static final int VERSION = 2;
+	// bytes before the payload: magic, version, size, source crc, crc
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+	/**
+	 * Returns the venues described by the given venue file, loading them from
+	 * its snapshot if it is up to date and otherwise parsing the file (see
+	 * VenueReader.read) and writing a new snapshot.
+	 *
+	 * @param fileName
+	 *            the name of the venue file
+	 * @return a list of the venues from the file, in the order in which they
+	 *         appear in the file.
+	 * @throws IOException
+	 *             if there is an error reading from the venue file.
+	 * @throws FormatException
+	 *             if the venue file has to be parsed and its format is
+	 *             invalid, as for VenueReader.read.
+	 */
+	public static List<Venue> read(String fileName) throws IOException,
+	FormatException {
+		Path source = Paths.get(fileName);
+		Path snapshot = snapshotOf(source);
+		long size = Files.size(source);
+		// taken before parsing, so a file changed meanwhile does not match
+		long checksum = checksum(source);
+		if (Files.exists(snapshot)) {
+			try {
+				List<Venue> venues = readSnapshot(snapshot, size, checksum);
+				if (venues != null) {
+					return venues;
+				}
+			} catch (IOException e) {
+				// an unreadable snapshot is as good as none
+			}
+		}
+		List<Venue> venues = VenueReader.readParallel(fileName);
+		try {
+			writeSnapshot(snapshot, venues, size, checksum);
+		} catch (IOException e) {
+			// the snapshot is only a cache; parse again next time
+			deleteQuietly(snapshot);
+		}
+		return venues;
+	}
+
+	/**
+	 * Returns the CRC-32 checksum of the contents of the given file.
+	 *
+	 * @param file
+	 *            the path of the file
+	 * @return the checksum of the file's bytes
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static long checksum(Path file) throws IOException {
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+		try (FileChannel channel = FileChannel.open(file)) {
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns the path of the snapshot of the given venue file.
+	 *
+	 * @param source
+	 *            the path of a venue file
+	 * @return the path of its snapshot
+	 */
+	public static Path snapshotOf(Path source) {
+		return source.resolveSibling(source.getFileName() + SUFFIX);
+	}
+
+	/**
+	 * Writes a snapshot of the given venues, read from a venue file of the
+	 * given size and checksum (see checksum).
+	 *
+	 * @param snapshot
+	 *            the path of the snapshot to write
+	 * @param venues
+	 *            the venues read from the venue file
+	 * @param size
+	 *            the size of the venue file, in bytes
+	 * @param checksum
+	 *            the checksum of the venue file
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 */
+	public static void writeSnapshot(Path snapshot, List<Venue> venues,
+			long size, long checksum) throws IOException {
+		// number the locations and corridors of the venues
+		Map<Location, Integer> locations = new HashMap<Location, Integer>();
+		List<Location> locationTable = new ArrayList<Location>();
+		Map<Corridor, Integer> corridors = new HashMap<Corridor, Integer>();
+		List<Corridor> corridorTable = new ArrayList<Corridor>();
+		for (Venue venue : venues) {
+			LoadVector loads = venue.getCapacityLoads();
+			for (int i = 0; i < loads.size(); i++) {
+				Corridor corridor = loads.getCorridor(i);
+				if (!corridors.containsKey(corridor)) {
+					corridors.put(corridor, corridorTable.size());
+					corridorTable.add(corridor);
+					number(corridor.getStart(), locations, locationTable);
+					number(corridor.getEnd(), locations, locationTable);
+				}
+			}
+		}
+		// write to a temporary file, then replace the snapshot with it
+		Path temporary = snapshot.resolveSibling(snapshot.getFileName()
+				+ ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				channel.position(HEADER_SIZE);
+				CRC32 crc = new CRC32();
+				DataOutputStream out = new DataOutputStream(
+						new CheckedOutputStream(new BufferedOutputStream(
+								Channels.newOutputStream(channel), 1 << 16), crc));
+				out.writeInt(locationTable.size());
+				for (Location location : locationTable) {
+					writeString(out, location.getName());
+				}
+				out.writeInt(corridorTable.size());
+				for (Corridor corridor : corridorTable) {
+					out.writeInt(locations.get(corridor.getStart()));
+					out.writeInt(locations.get(corridor.getEnd()));
+					out.writeInt(corridor.getCapacity());
+				}
+				out.writeInt(venues.size());
+				for (Venue venue : venues) {
+					writeString(out, venue.getName());
+					out.writeInt(venue.getCapacity());
+					LoadVector loads = venue.getCapacityLoads();
+					out.writeInt(loads.size());
+					for (int i = 0; i < loads.size(); i++) {
+						out.writeInt(corridors.get(loads.getCorridor(i)));
+						out.writeInt(loads.getLoad(i));
+					}
+				}
+				out.flush();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).putLong(size)
+				.putLong(checksum).putInt((int) crc.getValue());
+				header.flip();
+				channel.write(header, 0);
+			}
+			Files.move(temporary, snapshot,
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			// only left behind if writing or moving it failed
+			deleteQuietly(temporary);
+		}
+	}
+
+	/**
+	 * Deletes file if it exists, ignoring any failure: it is a stale or
+	 * partly written cache file, which will not match the next read anyway.
+	 */
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// e.g. a read-only directory; leave the file
+		}
+	}
+
+	/**
+	 * Loads the venues from a snapshot, if it was made from a venue file of
+	 * the given size and checksum and is not corrupt.
+	 *
+	 * @param snapshot
+	 *            the path of the snapshot
+	 * @param size
+	 *            the current size of the venue file, in bytes
+	 * @param checksum
+	 *            the current checksum of the venue file (see checksum)
+	 * @return the venues in the snapshot, or null if the snapshot is out of
+	 *         date or invalid
+	 * @throws IOException
+	 *             if the snapshot cannot be read
+	 */
+	public static List<Venue> readSnapshot(Path snapshot, long size,
+			long checksum) throws IOException {
+		ByteBuffer in;
+		try (FileChannel channel = FileChannel.open(snapshot)) {
+			if (channel.size() < HEADER_SIZE
+					|| channel.size() > Integer.MAX_VALUE) {
+				return null;
+			}
+			in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (in.getInt() != MAGIC || in.getInt() != VERSION
+				|| in.getLong() != size || in.getLong() != checksum) {
+			return null; // not a snapshot of the current file
+		}
+		int expected = in.getInt();
+		CRC32 crc = new CRC32();
+		crc.update(in.duplicate());
+		if ((int) crc.getValue() != expected) {
+			return null; // corrupt
+		}
+		try {
+			Location[] locations = new Location[in.getInt()];
+			for (int i = 0; i < locations.length; i++) {
+				locations[i] = CorridorPool.location(readString(in));
+			}
+			Corridor[] corridors = new Corridor[in.getInt()];
+			for (int i = 0; i < corridors.length; i++) {
+				Location start = locations[in.getInt()];
+				Location end = locations[in.getInt()];
+				corridors[i] = CorridorPool.corridor(start, end, in.getInt());
+			}
+			int count = in.getInt();
+			List<Venue> venues = new ArrayList<Venue>(count);
+			for (int v = 0; v < count; v++) {
+				String name = readString(in);
+				int capacity = in.getInt();
+				Corridor[] venueCorridors = new Corridor[in.getInt()];
+				int[] loads = new int[venueCorridors.length];
+				for (int i = 0; i < loads.length; i++) {
+					venueCorridors[i] = corridors[in.getInt()];
+					loads[i] = in.getInt();
+					if (loads[i] <= 0 || loads[i] > capacity || (i > 0
+							&& venueCorridors[i - 1].compareTo(
+									venueCorridors[i]) >= 0)) {
+						return null; // not as written by writeSnapshot
+					}
+				}
+				// written from valid venues, so no need to check them again
+				venues.add(new Venue(name, capacity,
+						new LoadVector(venueCorridors, loads)));
+			}
+			return venues;
+		} catch (RuntimeException e) {
+			// e.g. BufferUnderflowException or an invalid index: the
+			// snapshot is inconsistent despite a matching checksum
+			return null;
+		}
+	}
+
+	/**
+	 * Gives location the next number if it has none yet.
+	 */
+	private static void number(Location location,
+			Map<Location, Integer> numbers, List<Location> table) {
+		if (!numbers.containsKey(location)) {
+			numbers.put(location, table.size());
+			table.add(location);
+		}
+	}
+
+	/**
+	 * Writes a string as its UTF-8 length followed by its UTF-8 bytes.
+	 */
+	private static void writeString(DataOutputStream out, String value)
+			throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by writeString.
+	 */
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,30 @@
+package planner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <p>
+ * An unmodifiable list of the venues in a venue file that may keep the file
+ * open while it is in use, as returned by VenueReader.readLazy.
+ * </p>
+ *
+ * <p>
+ * Close the list once its venues are no longer needed, e.g. by reading it
+ * in a try-with-resources statement, so that the file is not left open.
+ * </p>
+ */
+public interface VenueList extends List<Venue>, Closeable {
+
+	/**
+	 * Closes the venue file, if the list keeps it open. Venues that have
+	 * already been read can still be accessed, but others may not be.
+	 * Closing a closed list has no effect.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	@Override
+	void close() throws IOException;
+}
@@ -1,33 +1,69 @@
 package planner;
 
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
- * Provides a method to read in a list of venues from a text file.
+ * <p>
+ * Provides methods to read in a list of venues from a text file.
+ * </p>
+ *
+ * <p>
+ * The methods are reentrant and may be called from any number of threads at
+ * once, e.g. to load one catalogue per district concurrently. Every call
+ * parses with its own VenueReader instance; the only state shared between
+ * calls is the CorridorPool, which is safe for concurrent use.
+ * </p>
  */
 public class VenueReader {
 
+	/*
+	 * Each instance holds the state of parsing one file, or one part of a
+	 * file when reading in parallel.
+	 */
+
 	// A List containing all the venues in the order it's contained in a file.
-	private static List<Venue> venueList;
+	private List<Venue> venueList;
+	// The venues in venueList, for constant time duplicate checks.
+	private Set<Venue> venueSet;
+	// Line number of the empty line ending each venue in venueList
+	private List<Integer> venueEndLines;
+	// Format error that stopped a parallel read of part of a file
+	private FormatException error;
 	// Traffic description on all corridors of a venue
 	// when hosting an event of max size.
-	private static Traffic venueT;
+	private Traffic venueT;
 	// Traffic generated in a corridor when a venue is
 	//  hosting at max capacity.
-	private static int cTraffic;
+	private int cTraffic;
 	// Keeps track of line number in a file being read.
-	private static int lineNumber;
+	private int lineNumber;
 	// Capacity of a corridor
-	private static int corridorCap;
+	private int corridorCap;
 	// Capacity of a venue
-	private static int vCapacity;
+	private int vCapacity;
 	// Check if capacity's are integers && >= 0
-	private static boolean check;
+	private boolean check;
 
 
 	/*
@@ -130,6 +166,12 @@ public class VenueReader {
 	 * the line of the file where the problem was detected.
 	 * </p>
 	 *
+	 * <p>
+	 * The file may be gzip or zstd compressed, in which case it is
+	 * decompressed as it is read; line numbers are those of the decompressed
+	 * text. Compression is recognised by the first bytes of the file.
+	 * </p>
+	 *
 	 * @param fileName
 	 *            the name of the file to read from.
 	 * @return a list of the venues from the file, in the order in which they
@@ -147,72 +189,448 @@ public class VenueReader {
 	 */
 	public static List<Venue> read(String fileName) throws IOException,
 	FormatException {
-		FileReader fr = new FileReader(fileName);
-		Scanner file = new Scanner(fr);
-		venueList = new ArrayList<Venue>();
-		lineNumber = 0;
+		VenueReader reader = new VenueReader(0);
+		try (LineReader file = LineReader.open(Paths.get(fileName))) {
+			reader.readVenues(file);
+		}
+		return reader.venueList;
+	}
+
+	/**
+	 * <p>
+	 * Reads the venues described by a text file, like read(fileName), but
+	 * parses different parts of the file in parallel, using one thread for
+	 * each available processor.
+	 * </p>
+	 *
+	 * <p>
+	 * The result, and any FormatException thrown, are the same as for
+	 * read(fileName).
+	 * </p>
+	 *
+	 * @param fileName
+	 *            the name of the file to read from.
+	 * @return a list of the venues from the file, in the order in which they
+	 *         appear in the file.
+	 * @throws IOException
+	 *             if there is an error reading from the input file.
+	 * @throws FormatException
+	 *             if there is an error with the input format, as for
+	 *             read(fileName).
+	 */
+	public static List<Venue> readParallel(String fileName)
+			throws IOException, FormatException {
+		return readParallel(fileName,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * <p>
+	 * Reads the venues described by a text file, like read(fileName), but
+	 * parses different parts of the file on the given number of threads.
+	 * </p>
+	 *
+	 * <p>
+	 * A quick scan first splits the file into parts that each contain whole
+	 * venue descriptions. The parts are parsed in parallel and the results
+	 * are merged in file order, checking for duplicate venues across parts,
+	 * so the result, and any FormatException thrown (including its line
+	 * number), are the same as for read(fileName).
+	 * </p>
+	 *
+	 * @param fileName
+	 *            the name of the file to read from.
+	 * @param threads
+	 *            the number of threads to parse with
+	 * @return a list of the venues from the file, in the order in which they
+	 *         appear in the file.
+	 * @throws IOException
+	 *             if there is an error reading from the input file.
+	 * @throws FormatException
+	 *             if there is an error with the input format, as for
+	 *             read(fileName).
+	 */
+	public static List<Venue> readParallel(String fileName, int threads)
+			throws IOException, FormatException {
+		final ByteBuffer bytes;
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+			if (threads <= 1 || channel.size() > Integer.MAX_VALUE
+					|| LineReader.isCompressed(Paths.get(fileName))) {
+				// not worth splitting, too large to map in one buffer, or
+				// compressed, so it can only be read from the start
+				bytes = null;
+			} else {
+				bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						channel.size());
+			}
+		}
+		if (bytes == null) {
+			return read(fileName);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<VenueReader>> parts =
+					new ArrayList<Future<VenueReader>>();
+			for (final int[] part : splitParts(bytes, threads * 4)) {
+				parts.add(pool.submit(new Callable<VenueReader>() {
+					@Override
+					public VenueReader call() throws IOException {
+						return readPart(bytes, part[0], part[1], part[2]);
+					}
+				}));
+			}
+			// merge in file order, so the first error in the file is thrown
+			VenueReader merged = new VenueReader(0);
+			for (Future<VenueReader> part : parts) {
+				merged.merge(get(part));
+			}
+			return merged.venueList;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns a list of the venues described by a text file, in file order,
+	 * in which each venue is only parsed when it is first accessed.
+	 * </p>
+	 *
+	 * <p>
+	 * The file is scanned once to index where each venue description starts
+	 * and the name of each venue; nothing else is parsed. Startup time and
+	 * memory therefore grow only slowly with the size of the file, and
+	 * parsed venues are held in a cache that the garbage collector may
+	 * clear when memory runs low. The list is unmodifiable.
+	 * </p>
+	 *
+	 * <p>
+	 * A format error in a venue description is thrown, as an
+	 * UncheckedFormatException with the message read(fileName) would give,
+	 * when that venue is first accessed. Duplicate venues are not detected,
+	 * as that would require parsing every venue. Errors reading the file
+	 * after the initial scan are thrown as UncheckedIOExceptions.
+	 * </p>
+	 *
+	 * <p>
+	 * The list of an uncompressed file keeps the file open: close it once
+	 * its venues are no longer needed, e.g. with a try-with-resources
+	 * statement.
+	 * </p>
+	 *
+	 * <p>
+	 * A compressed file can only be read from its start, so it is read in
+	 * full, as by read(fileName), and any format error is thrown immediately
+	 * as an UncheckedFormatException.
+	 * </p>
+	 *
+	 * @param fileName
+	 *            the name of the file to read from.
+	 * @return a list of the venues from the file, in the order in which they
+	 *         appear in the file.
+	 * @throws IOException
+	 *             if there is an error reading from the input file.
+	 */
+	public static VenueList readLazy(String fileName) throws IOException {
+		if (LineReader.isCompressed(Paths.get(fileName))) {
+			// venues cannot be read from the middle of a compressed file
+			try {
+				return new LoadedVenueList(read(fileName));
+			} catch (FormatException e) {
+				throw new UncheckedFormatException(e);
+			}
+		}
+		return new LazyVenueList(Paths.get(fileName));
+	}
+
+	/**
+	 * <p>
+	 * Returns a sequential stream of the venues described by a text file, in
+	 * file order, which parses each venue only when the stream needs it.
+	 * </p>
+	 *
+	 * <p>
+	 * Unlike read(fileName), no list of venues is built: apart from the venue
+	 * being parsed, only a compact set of the fingerprints of the venues
+	 * already read is kept, to detect duplicates. Files with more venues than
+	 * fit in memory can therefore be processed, and processing starts as soon
+	 * as the first venue has been read. Two different venues are reported as
+	 * duplicates only if their 64-bit fingerprints are equal, which happens
+	 * with negligible probability.
+	 * </p>
+	 *
+	 * <p>
+	 * A format error is thrown, when the stream reaches it, as an
+	 * UncheckedFormatException with the message read(fileName) would give;
+	 * venues before it have already been passed down the stream. Errors
+	 * reading the file are thrown as UncheckedIOExceptions. The stream holds
+	 * the file open, so it should be closed, e.g. with try-with-resources.
+	 * </p>
+	 *
+	 * @param file
+	 *            the file to read from.
+	 * @return a stream of the venues from the file, in the order in which they
+	 *         appear in the file.
+	 * @throws IOException
+	 *             if the file cannot be opened.
+	 */
+	public static Stream<Venue> stream(Path file) throws IOException {
+		final LineReader lines = LineReader.open(file);
+		final VenueReader reader = new VenueReader(0);
+		final FingerprintSet seen = new FingerprintSet();
+		Spliterator<Venue> venues = new Spliterators.AbstractSpliterator<Venue>(
+				Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL
+				| Spliterator.DISTINCT | Spliterator.IMMUTABLE) {
+			@Override
+			public boolean tryAdvance(Consumer<? super Venue> action) {
+				Venue venue;
+				try {
+					venue = reader.nextVenue(lines);
+					if (venue != null && !seen.add(venue.getFingerprint())) {
+						throw new FormatException("Error on line: "
+								+ reader.lineNumber + "\n" + "Duplicate venues");
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				} catch (FormatException e) {
+					throw new UncheckedFormatException(e);
+				}
+				if (venue == null) {
+					return false;
+				}
+				action.accept(venue);
+				return true;
+			}
+		};
+		return StreamSupport.stream(venues, false).onClose(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					lines.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Parses the single venue description in bytes, whose first line is
+	 * numbered firstLine.
+	 *
+	 * @return the venue described, or null if bytes is empty
+	 * @throws FormatException
+	 *             if the description is not correctly formatted
+	 */
+	static Venue readVenue(byte[] bytes, int firstLine)
+			throws IOException, FormatException {
+		VenueReader reader = new VenueReader(firstLine - 1);
+		reader.readVenues(new LineReader(bytes, 0, bytes.length));
+		return reader.venueList.isEmpty() ? null : reader.venueList.get(0);
+	}
+
+	/**
+	 * Creates a reader whose next line is lineNumber + 1.
+	 */
+	private VenueReader(int lineNumber) {
+		this.venueList = new ArrayList<Venue>();
+		this.venueSet = new HashSet<Venue>();
+		this.venueEndLines = new ArrayList<Integer>();
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * Reads venue descriptions until the end of file.
+	 * @require file != null
+	 * @ensure venueList contains each venue read, in file order
+	 */
+	private void readVenues(LineReader file)
+			throws IOException, FormatException {
 		/*
 		 * While loop extracts a venue's info from file
 		 * and converts it to object Venue and placed in list<Venue>
 		 */
-		while (file.hasNext()) {
-			file.useDelimiter("\n");
-			String name = file.next();
-			lineNumber++;
-			verifyVenueParam(name, true); // Check venue name is valid
-			// Check if venue capacity is valid
-			if (check = file.hasNextInt()) {
-				vCapacity = Integer.parseInt(file.next()); // venue capacity
+		Venue newVenue;
+		while ((newVenue = nextVenue(file)) != null) {
+			// Check for duplicate venues
+			verifyVenueParam(newVenue, null);
+		}
+	}
+
+	/**
+	 * Reads the next venue description, without checking for duplicates.
+	 * @require file != null
+	 * @ensure returns the venue read, or null at the end of file
+	 */
+	private Venue nextVenue(LineReader file)
+			throws IOException, FormatException {
+		if (!file.next()) {
+			return null;
+		}
+		String name = file.text();
+		lineNumber++;
+		verifyVenueParam(name, true); // Check venue name is valid
+		// Check if venue capacity is valid
+		if (check = file.next()) {
+			long capacity = file.parseInt(0, file.length());
+			if (check = capacity != LineReader.NOT_AN_INT) {
+				vCapacity = (int) capacity; // venue capacity
 				lineNumber++;
 			}
+		}
+		verifyVenueParam("Invalid venue capacity", check);
+		venueT = new Traffic(); //zero traffic
+		// Process a venue's information from file
+		readVenueTraffic(file);
+		return new Venue(name, vCapacity, venueT);
+	}
 
-			verifyVenueParam("Invalid venue capacity", check);
-			venueT = new Traffic(); //zero traffic
-			// Process a venue's information from file
-			readVenueTraffic(file);
-			Venue newVenue = new Venue(name, vCapacity, venueT);
-			// Check for duplicate venues
-			verifyVenueParam(newVenue, null);
+	/**
+	 * Splits bytes into about the given number of parts, each made up of
+	 * whole venue descriptions, without parsing them. A venue description
+	 * ends at the first empty line after its name and capacity lines.
+	 *
+	 * @return {start offset, end offset, first line number} of each part
+	 */
+	private static List<int[]> splitParts(ByteBuffer bytes, int parts) {
+		List<int[]> result = new ArrayList<int[]>();
+		int size = bytes.limit();
+		int target = Math.max(size / parts, 1);
+		int partStart = 0; // offset of the part being built
+		int partLine = 1; // number of the first line of the part
+		int line = 1; // number of the line at pos
+		int lineInVenue = 0; // lines of the current venue seen so far
+		int pos = 0;
+		while (pos < size) {
+			int eol = pos;
+			while (eol < size && bytes.get(eol) != '\n') {
+				eol++;
+			}
+			int next = Math.min(eol + 1, size);
+			if (eol == pos && lineInVenue >= 2) {
+				// empty line ending a venue description
+				lineInVenue = 0;
+				if (next - partStart >= target) {
+					result.add(new int[] {partStart, next, partLine});
+					partStart = next;
+					partLine = line + 1;
+				}
+			} else {
+				lineInVenue++;
+			}
+			line++;
+			pos = next;
+		}
+		if (partStart < size) {
+			result.add(new int[] {partStart, size, partLine});
+		}
+		return result;
+	}
+
+	/**
+	 * Parses the venues in bytes from start to end, whose first line is
+	 * numbered firstLine. A format error is recorded in the returned
+	 * reader's error, after the venues read before it.
+	 */
+	private static VenueReader readPart(ByteBuffer bytes, int start, int end,
+			int firstLine) throws IOException {
+		byte[] part = new byte[end - start];
+		ByteBuffer view = bytes.duplicate();
+		view.position(start);
+		view.get(part);
+		VenueReader reader = new VenueReader(firstLine - 1);
+		try {
+			reader.readVenues(new LineReader(part, 0, part.length));
+		} catch (FormatException e) {
+			reader.error = e;
+		}
+		return reader;
+	}
+
+	/**
+	 * Appends the venues of a part of the file read in parallel to this
+	 * reader's venues, checking for duplicates, then throws the part's
+	 * format error, if any.
+	 */
+	private void merge(VenueReader part) throws FormatException {
+		for (int i = 0; i < part.venueList.size(); i++) {
+			lineNumber = part.venueEndLines.get(i);
+			verifyVenueParam(part.venueList.get(i), null);
+		}
+		if (part.error != null) {
+			throw part.error;
+		}
+	}
+
+	/**
+	 * Waits for a part of the file to be read, rethrowing any error.
+	 */
+	private static VenueReader get(Future<VenueReader> part)
+			throws IOException {
+		try {
+			return part.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted reading venues");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
 		}
-		file.close();
-		fr.close();
-		return venueList;
 	}
 
 	/**
 	 * Extracts a venue's information required to  create an instance of Venue
-	 * @require venueInfo != null && venueInfo.hasNext()
+	 * @require venueInfo != null
 	 * @ensure vCapacity >= corridorCap >= cTraffic >= 0
 	 *
 	 *
 	 */
-	private static void readVenueTraffic(Scanner venueInfo)
-			throws FormatException{
-		String line;
-		venueInfo.useDelimiter(", |: |\n");
+	private void readVenueTraffic(LineReader venueInfo)
+			throws FormatException, IOException {
 		/* process fileInfo of a new venue*/
-		line = venueInfo.next();
+		check = venueInfo.next();
+		verifyVenueParam("Missing empty line", check); // Check for empty line
 		lineNumber++;
-		// Process a Venue's information
-		while(!line.equals("")) {
-			Location start = new Location(line); //corridor start location
-			Location end = new Location(venueInfo.next());   //corridor end location
-			if (check = venueInfo.hasNext()) {
-				corridorCap = Integer.parseInt(venueInfo.next()); // corridor capacity
+		// Process a Venue's information, one corridor per line
+		while (venueInfo.length() != 0) {
+			// "START, END, CAPACITY: TRAFFIC"
+			int endAt = venueInfo.indexOf(',', ' ', 0);
+			int capacityAt = endAt < 0 ? -1
+					: venueInfo.indexOf(',', ' ', endAt + 2);
+			int trafficAt = capacityAt < 0 ? -1
+					: venueInfo.indexOf(':', ' ', capacityAt + 2);
+			long number = LineReader.NOT_AN_INT;
+			if (trafficAt >= 0) {
+				number = venueInfo.parseInt(capacityAt + 2, trafficAt);
+			}
+			if (check = number != LineReader.NOT_AN_INT) {
+				corridorCap = (int) number; // corridor capacity
 			}
 			// Check corridor's capacity is valid
 			verifyCorridorParam("venue's corridor traffic invalid", check);
-			if (check = venueInfo.hasNextInt()) {
-				cTraffic = Integer.parseInt(venueInfo.next()); // corridor traffic
+			number = venueInfo.parseInt(trafficAt + 2, venueInfo.length());
+			if (check = number != LineReader.NOT_AN_INT) {
+				cTraffic = (int) number; // corridor traffic
 			}
 			// Check corridor's traffic is valid
 			verifyCorridorParam(" - Traffic is invalid", check);
+			// corridor start and end locations
+			Location start = CorridorPool.location(venueInfo.text(0, endAt));
+			Location end = CorridorPool.location(
+					venueInfo.text(endAt + 2, capacityAt));
 			verifyCorridorParam(start, end); // Check location names are valid
 			verifyCorridorParam(corridorCap, vCapacity); //check if traffic < capacities
-			Corridor newC = new Corridor(start, end, corridorCap);
+			Corridor newC = CorridorPool.corridor(start, end, corridorCap);
 			verifyCorridorParam(venueT, newC); // check for duplicate corridors
-			verifyVenueParam(venueInfo, null); // Check for empty line;
-			line = venueInfo.next(); // next corridor
+			check = venueInfo.next(); // next corridor
+			verifyVenueParam("Missing empty line", check); // Check for empty line
 			lineNumber++;
 		}
 	}
@@ -222,12 +640,12 @@ public class VenueReader {
 	 * capacity are valid. Also  checks for empty line ending of file.
 	 *
 	 * @require object && object2 are instances of one of the following
-	 * (String| Boolean| Venue| Scanner).
+	 * (String| Boolean| Venue).
 	 * @ensure  A Venue's name != null || "" && Venue capacity == Integer &&
 	 * 			no duplicate venues are included in List<Venue> && file read
 	 * 			contains, the "" at the end of the file (correct formart) .
 	 */
-	private static void verifyVenueParam(Object object, Object object2)
+	private void verifyVenueParam(Object object, Object object2)
 			throws FormatException {
 		// Check venue name is valid and venue capacity is valid
 		if (object instanceof String && object2 instanceof Boolean) {
@@ -243,22 +661,14 @@ public class VenueReader {
 			// Check for duplicate venues from file
 		} else if (object instanceof Venue) {
 			Venue v = (Venue)object;
-			if (venueList.contains(v)) {
+			if (!venueSet.add(v)) {
 				// new Venue is already contained in the List<Venue>
 				throw new FormatException("Error on line: " + lineNumber
 						+ "\n" + "Duplicate venues");
 			} else {
 				venueList.add(v);
+				venueEndLines.add(lineNumber);
 			}
-			// Check file for empty line
-		} else if (object instanceof Scanner) {
-			Scanner venueInfo = (Scanner)object;
-			if (venueInfo.hasNext() == false) {
-				//missing empty line
-				throw new FormatException("Error on line: " + lineNumber
-						+ "\n" + "Missing empty line");
-			}
-
 		}
 	}
 
@@ -272,7 +682,7 @@ public class VenueReader {
 	 * 		   locations, != null || ""
 	 */
 
-	private static void verifyCorridorParam(Object object, Object object2)
+	private void verifyCorridorParam(Object object, Object object2)
 			throws FormatException {
 		// Check for duplicate Corridor
 		if(object instanceof Traffic && object2 instanceof Corridor) {
@@ -296,6 +706,10 @@ public class VenueReader {
 				// Invalid corridor end location
 				throw new FormatException("Error on line: " + lineNumber + "\n"
 						+"incorrectly formatted corridor, End is -"+ end.getName());
+			} else if (start.equals(end)) {
+				// corridor must go between two different locations
+				throw new FormatException("Error on line: " + lineNumber + "\n"
+						+"corridor start and end are the same location");
 			}
 			// Check for traffic exceeding of venue or corridor capacity
 		} else if (object instanceof Integer && object2 instanceof Integer) {
@@ -0,0 +1,265 @@
+package planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * An immutable, column-oriented copy of a list of venues.
+ * </p>
+ *
+ * <p>
+ * Each venue is a row of the table. Row r holds the venue's name, its
+ * capacity, and its traffic for an event of maximum size, stored in
+ * compressed sparse row (CSR) form: the corridors of row r are the entries
+ * k with start(r) &lt;= k &lt; end(r), where corridorId(k) is the id of the
+ * (interned) corridor and traffic(k) its traffic. Corridors appear in their
+ * natural order within a row.
+ * </p>
+ *
+ * <p>
+ * Scans over capacities or loads read consecutive array elements instead of
+ * following references through separate Venue and Traffic objects, so bulk
+ * queries and solver loops should work on the table. getVenue(r) returns the
+ * Venue object a row was built from.
+ * </p>
+ */
+public class VenueTable {
+
+	// venue of each row
+	private final Venue[] venues;
+	// name of each row, the String held by its venue
+	private final String[] names;
+	// capacity of each row
+	private final int[] capacities;
+	// rowOffsets[r] is the first entry of row r, rowOffsets[r+1] its end
+	private final int[] rowOffsets;
+	// corridor id of each entry
+	private final int[] corridorIds;
+	// traffic of each entry for an event of maximum size at its venue
+	private final int[] traffic;
+	// row of each venue
+	private final Map<Venue, Integer> rows;
+	/*
+	 * Invariant: venues.length == names.length == capacities.length ==
+	 * rowOffsets.length - 1 && corridorIds.length == traffic.length ==
+	 * rowOffsets[venues.length] && rows.get(venues[r]) == r
+	 */
+
+	/**
+	 * Builds a table with one row for each of the given venues, in order.
+	 *
+	 * @param venueList
+	 *            the venues of the table
+	 * @throws NullPointerException
+	 *             if venueList is null or contains null
+	 */
+	public VenueTable(List<Venue> venueList) {
+		int n = venueList.size();
+		venues = venueList.toArray(new Venue[n]);
+		names = new String[n];
+		capacities = new int[n];
+		rowOffsets = new int[n + 1];
+		rows = new HashMap<Venue, Integer>(n * 2);
+		for (int r = 0; r < n; r++) {
+			names[r] = venues[r].getName();
+			capacities[r] = venues[r].getCapacity();
+			rowOffsets[r + 1] = rowOffsets[r]
+					+ venues[r].getCapacityLoads().size();
+			// keep the first row of duplicate venues
+			rows.putIfAbsent(venues[r], r);
+		}
+		corridorIds = new int[rowOffsets[n]];
+		traffic = new int[rowOffsets[n]];
+		for (int r = 0; r < n; r++) {
+			LoadVector loads = venues[r].getCapacityLoads();
+			for (int i = 0; i < loads.size(); i++) {
+				corridorIds[rowOffsets[r] + i] = loads.getCorridor(i).getId();
+				traffic[rowOffsets[r] + i] = loads.getLoad(i);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of rows (venues) in the table.
+	 *
+	 * @return the number of rows
+	 */
+	public int size() {
+		return venues.length;
+	}
+
+	/**
+	 * Returns the venues of the table, in row order.
+	 *
+	 * @return an unmodifiable list of the venues of each row
+	 */
+	public List<Venue> getVenues() {
+		return Collections.unmodifiableList(Arrays.asList(venues));
+	}
+
+	/**
+	 * Returns the venue of the given row.
+	 *
+	 * @param row
+	 *            the row, 0 &lt;= row &lt; size()
+	 * @return the venue of the row
+	 */
+	public Venue getVenue(int row) {
+		return venues[row];
+	}
+
+	/**
+	 * Returns the row of the given venue, or -1 if the venue is not in the
+	 * table.
+	 *
+	 * @param venue
+	 *            the venue to look up
+	 * @return the row of venue, or -1
+	 */
+	public int rowOf(Venue venue) {
+		Integer row = rows.get(venue);
+		return row == null ? -1 : row;
+	}
+
+	/**
+	 * Returns the name of the venue in the given row.
+	 *
+	 * @param row
+	 *            the row, 0 &lt;= row &lt; size()
+	 * @return the name of the row's venue
+	 */
+	public String name(int row) {
+		return names[row];
+	}
+
+	/**
+	 * Returns the capacity of the venue in the given row.
+	 *
+	 * @param row
+	 *            the row, 0 &lt;= row &lt; size()
+	 * @return the capacity of the row's venue
+	 */
+	public int capacity(int row) {
+		return capacities[row];
+	}
+
+	/**
+	 * Returns the first entry of the given row.
+	 *
+	 * @param row
+	 *            the row, 0 &lt;= row &lt; size()
+	 * @return the position of the row's first corridor entry
+	 */
+	public int start(int row) {
+		return rowOffsets[row];
+	}
+
+	/**
+	 * Returns the position after the last entry of the given row.
+	 *
+	 * @param row
+	 *            the row, 0 &lt;= row &lt; size()
+	 * @return the end position of the row's corridor entries
+	 */
+	public int end(int row) {
+		return rowOffsets[row + 1];
+	}
+
+	/**
+	 * Returns the corridor id of entry k.
+	 *
+	 * @param k
+	 *            the entry, with start(r) &lt;= k &lt; end(r) for some r
+	 * @return the id of the entry's (interned) corridor
+	 */
+	public int corridorId(int k) {
+		return corridorIds[k];
+	}
+
+	/**
+	 * Returns the traffic of entry k for an event of maximum size at its
+	 * venue.
+	 *
+	 * @param k
+	 *            the entry, with start(r) &lt;= k &lt; end(r) for some r
+	 * @return the capacity traffic of the entry
+	 */
+	public int traffic(int k) {
+		return traffic[k];
+	}
+
+	/**
+	 * Returns the traffic of entry k of the given row for an event of the
+	 * given size, truncated exactly as in Venue.getTraffic.
+	 *
+	 * @param row
+	 *            the row of the entry
+	 * @param k
+	 *            the entry, with start(row) &lt;= k &lt; end(row)
+	 * @param size
+	 *            the size of the event, at most capacity(row)
+	 * @return the traffic generated on the entry's corridor
+	 */
+	public int scaledTraffic(int row, int k, int size) {
+		return size * traffic[k] / capacities[row];
+	}
+
+	/**
+	 * Adds sign times the traffic generated by an event of the given size at
+	 * the venue of the given row to loads, which is indexed by corridor id.
+	 *
+	 * @param row
+	 *            the row of the venue, 0 &lt;= row &lt; size()
+	 * @param size
+	 *            the size of the event, at most capacity(row)
+	 * @param sign
+	 *            1 to add the traffic, or -1 to subtract it
+	 * @param loads
+	 *            traffic on each corridor, long enough for every corridor id
+	 *            of the row
+	 */
+	public void addTraffic(int row, int size, int sign, int[] loads) {
+		for (int k = rowOffsets[row]; k < rowOffsets[row + 1]; k++) {
+			loads[corridorIds[k]] += sign * scaledTraffic(row, k, size);
+		}
+	}
+
+	/**
+	 * Returns the rows whose venue has a capacity of at least size, in row
+	 * order.
+	 *
+	 * @param size
+	 *            the minimum capacity
+	 * @return the rows of venues that can host an event of the given size
+	 */
+	public int[] rowsWithCapacity(int size) {
+		int count = 0;
+		int[] result = new int[capacities.length];
+		for (int r = 0; r < capacities.length; r++) {
+			if (capacities[r] >= size) {
+				result[count++] = r;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Returns the venues of the given rows.
+	 *
+	 * @param selected
+	 *            rows of this table
+	 * @return the venues of the rows, in the given order
+	 */
+	public List<Venue> venuesOf(int[] selected) {
+		List<Venue> result = new ArrayList<Venue>(selected.length);
+		for (int row : selected) {
+			result.add(venues[row]);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,319 @@
+package planner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests a ConcurrentAllocationModel under allocations and deallocations from
+ * many threads at once.
+ */
+public class ConcurrentAllocationModelTest {
+
+	// numbers of threads each check is run with
+	private static final int[] THREADS = {1, 8, 64};
+	// length of each run, in milliseconds
+	private static final long MILLIS = 1000;
+	// number of random venues, and of the corridors they share
+	private static final int VENUES = 500;
+	private static final int CORRIDORS = 40;
+	// number of venues sharing a corridor with the always rejected venue
+	private static final int SHARING_VENUES = 5;
+	// number of corridors, never full, of the always rejected venue between
+	// the corridor it shares and its full corridor
+	private static final int SPARE_CORRIDORS = 100;
+
+	/**
+	 * Allocates events of random sizes to random venues, deallocates random
+	 * events and now and then auto-allocates an event, from each number of
+	 * threads. While the threads run, no corridor may ever have more traffic
+	 * than its capacity; once they stop, no venue may host two events, the
+	 * traffic must be that of the allocations, and exactly the venues not
+	 * allocated must be free.
+	 */
+	@Test
+	public void allocationsStaySafeAndConsistent()
+			throws InterruptedException {
+		List<Venue> venues = randomVenues(new Random(1));
+		for (int threads : THREADS) {
+			stress(venues, threads);
+		}
+	}
+
+	/**
+	 * A venue is always rejected, because one of its corridors is full;
+	 * another is shared with venues that can always be allocated together,
+	 * and many corridors with room to spare, which take time to check, come
+	 * in order between the two. Threads keep trying the first venue while
+	 * others allocate and deallocate the rest, none of which may ever be
+	 * rejected because of the traffic of the first, which is never
+	 * committed.
+	 */
+	@Test
+	public void pendingTrafficNeverCausesRejection()
+			throws InterruptedException {
+		for (int threads : THREADS) {
+			pendingTraffic(Math.max(threads, 2));
+		}
+	}
+
+	/**
+	 * Runs the random allocations of allocationsStaySafeAndConsistent with
+	 * the given number of threads, and checks the model.
+	 */
+	private static void stress(List<Venue> venues, int threads)
+			throws InterruptedException {
+		final List<Venue> used = venues;
+		final ConcurrentAllocationModel model =
+				new ConcurrentAllocationModel(venues);
+		final Set<Corridor> corridors = new HashSet<Corridor>();
+		for (Venue venue : venues) {
+			LoadVector loads = venue.getLoads(
+					new Event("whole", venue.getCapacity()));
+			for (int i = 0; i < loads.size(); i++) {
+				corridors.add(loads.getCorridor(i));
+			}
+		}
+		final AtomicLong made = new AtomicLong();
+		final AtomicLong overloads = new AtomicLong();
+		final long end = System.currentTimeMillis() + MILLIS;
+		Thread monitor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (System.currentTimeMillis() < end) {
+					for (Corridor corridor : corridors) {
+						if (model.getLoad(corridor) > corridor.getCapacity()) {
+							overloads.incrementAndGet();
+						}
+					}
+				}
+			}
+		});
+		monitor.start();
+		run(threads, new Worker() {
+			@Override
+			public void run(int index, Random random) {
+				while (System.currentTimeMillis() < end) {
+					Event event = new Event("e" + random.nextInt(VENUES * 2),
+							1 + random.nextInt(1000));
+					if (random.nextBoolean()) {
+						Venue venue = used.get(random.nextInt(VENUES));
+						if (venue.canHost(event)) {
+							try {
+								if (model.allocate(event, venue) == null) {
+									made.incrementAndGet();
+								}
+							} catch (IllegalStateException e) {
+								// event or venue taken by another thread
+							}
+						}
+					} else {
+						model.deallocate(event);
+					}
+					if (random.nextInt(100) == 0) {
+						model.autoAllocate(Arrays.asList(new Event("auto"
+								+ random.nextInt(50), 1 + random.nextInt(100))));
+					}
+				}
+			}
+		});
+		monitor.join();
+
+		String run = threads + " threads: ";
+		assertTrue(run + "no allocations made", made.get() > 0);
+		assertEquals(run + "corridor over capacity", 0, overloads.get());
+		Map<Event, Venue> allocations = model.getAllocations();
+		Traffic recomputed = new Traffic();
+		Set<Venue> hosting = new HashSet<Venue>();
+		for (Map.Entry<Event, Venue> allocation : allocations.entrySet()) {
+			recomputed.addTraffic(
+					allocation.getValue().getTraffic(allocation.getKey()));
+			assertTrue(run + "venue hosts two events",
+					hosting.add(allocation.getValue()));
+		}
+		// compared corridor by corridor, as sameTraffic compares boxed values
+		Traffic traffic = model.getTraffic();
+		assertEquals(run + "corridors with traffic",
+				recomputed.getCorridorsWithTraffic(),
+				traffic.getCorridorsWithTraffic());
+		for (Corridor corridor : recomputed.getCorridorsWithTraffic()) {
+			assertEquals(run + "traffic on " + corridor,
+					recomputed.getTraffic(corridor),
+					traffic.getTraffic(corridor));
+			assertTrue(run + corridor + " over capacity",
+					traffic.getTraffic(corridor) <= corridor.getCapacity());
+		}
+		for (Venue venue : venues) {
+			assertEquals(run + venue.getName() + " free",
+					!hosting.contains(venue), model.isFree(venue));
+		}
+		assertEquals(run + "free venues", venues.size() - allocations.size(),
+				model.getFreeVenues(0, Integer.MAX_VALUE).size());
+	}
+
+	/**
+	 * Runs the check of pendingTrafficNeverCausesRejection with the given
+	 * number of threads, half of which (at least one) try the venue that is
+	 * always rejected.
+	 *
+	 * @require threads >= 2
+	 */
+	private static void pendingTraffic(int threads)
+			throws InterruptedException {
+		// "shared" fits all the sharing venues, but not the rejected one too;
+		// "full" is filled by a permanent allocation; the spare corridors,
+		// named to come between the two, never fill
+		Corridor shared = CorridorPool.corridor(
+				CorridorPool.location("pending A"),
+				CorridorPool.location("pending B"), 100);
+		Corridor full = CorridorPool.corridor(
+				CorridorPool.location("pending Y"),
+				CorridorPool.location("pending Z"), 100);
+		Traffic rejectedTraffic = new Traffic();
+		rejectedTraffic.updateTraffic(shared, 60);
+		for (int i = 0; i < SPARE_CORRIDORS; i++) {
+			rejectedTraffic.updateTraffic(CorridorPool.corridor(
+					CorridorPool.location(String.format("pending M%03d", i)),
+					CorridorPool.location("pending N"), 100), 1);
+		}
+		rejectedTraffic.updateTraffic(full, 10);
+		final Venue rejected = new Venue("rejected", 100, rejectedTraffic);
+		Traffic fillerTraffic = new Traffic();
+		fillerTraffic.updateTraffic(full, 100);
+		Venue filler = new Venue("filler", 100, fillerTraffic);
+		final List<Venue> sharing = new ArrayList<Venue>();
+		for (int i = 0; i < SHARING_VENUES; i++) {
+			Traffic traffic = new Traffic();
+			traffic.updateTraffic(shared, 100 / SHARING_VENUES);
+			sharing.add(new Venue("sharing " + i, 100, traffic));
+		}
+		List<Venue> venues = new ArrayList<Venue>(sharing);
+		venues.add(rejected);
+		venues.add(filler);
+		final ConcurrentAllocationModel model =
+				new ConcurrentAllocationModel(venues);
+		assertNull(model.allocate(new Event("filler", 100), filler));
+
+		final int rejecting = threads / 2;
+		final AtomicLong made = new AtomicLong();
+		final AtomicLong falseRejections = new AtomicLong();
+		final long end = System.currentTimeMillis() + MILLIS;
+		run(threads, new Worker() {
+			@Override
+			public void run(int index, Random random) {
+				while (System.currentTimeMillis() < end) {
+					if (index >= rejecting) {
+						Event event = new Event("sharing " + index, 100);
+						Venue venue =
+								sharing.get(random.nextInt(SHARING_VENUES));
+						try {
+							if (model.allocate(event, venue) == null) {
+								made.incrementAndGet();
+							} else {
+								falseRejections.incrementAndGet();
+							}
+							model.deallocate(event);
+						} catch (IllegalStateException e) {
+							// venue taken by another thread
+						}
+					} else {
+						try {
+							model.allocate(new Event("rejected " + index, 100),
+									rejected);
+						} catch (IllegalStateException e) {
+							// tried by another thread at the same time
+						}
+					}
+				}
+			}
+		});
+		String run = threads + " threads: ";
+		assertTrue(run + "no allocations made", made.get() > 0);
+		assertEquals(run + "allocations rejected because of pending traffic",
+				0, falseRejections.get());
+		assertFalse(run + "rejected venue allocated",
+				model.getAllocations().containsValue(rejected));
+	}
+
+	/**
+	 * Returns VENUES venues of random capacities, each generating random
+	 * traffic on a few of CORRIDORS corridors of random capacities.
+	 */
+	private static List<Venue> randomVenues(Random random) {
+		Corridor[] corridors = new Corridor[CORRIDORS];
+		for (int i = 0; i < CORRIDORS; i++) {
+			corridors[i] = CorridorPool.corridor(
+					CorridorPool.location("random " + i),
+					CorridorPool.location("random " + i + "'"),
+					50 + random.nextInt(250));
+		}
+		List<Venue> venues = new ArrayList<Venue>();
+		for (int v = 0; v < VENUES; v++) {
+			int capacity = 100 + random.nextInt(900);
+			Traffic traffic = new Traffic();
+			for (int c = 1 + random.nextInt(5); c > 0; c--) {
+				traffic.updateTraffic(corridors[random.nextInt(CORRIDORS)],
+						1 + random.nextInt(capacity / 2));
+			}
+			venues.add(new Venue("venue " + v, capacity, traffic));
+		}
+		return venues;
+	}
+
+	/**
+	 * Work done by each thread of a run.
+	 */
+	private interface Worker {
+		/**
+		 * Does the work of the thread with the given index, using the given
+		 * source of random numbers.
+		 */
+		void run(int index, Random random);
+	}
+
+	/**
+	 * Runs worker on the given number of threads, each with its own index
+	 * and random numbers seeded by it, waits for them all to finish, and
+	 * rethrows the first error or exception thrown by any of them.
+	 */
+	private static void run(int threads, final Worker worker)
+			throws InterruptedException {
+		final AtomicReference<Throwable> failure =
+				new AtomicReference<Throwable>();
+		List<Thread> started = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			final int index = t;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						worker.run(index, new Random(index));
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			});
+			started.add(thread);
+			thread.start();
+		}
+		for (Thread thread : started) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError("thread failed", failure.get());
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package planner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the traffic over time kept by a Schedule.
+ */
+public class ScheduleTest {
+
+	// corridor shared by both venues, and one only the second venue uses
+	private Corridor shared;
+	private Corridor other;
+	// venues of capacity 100, so an event of size 100 generates exactly
+	// their capacity traffic
+	private Venue first;
+	private Venue second;
+	private Schedule schedule;
+
+	@Before
+	public void setUp() {
+		shared = CorridorPool.corridor(CorridorPool.location("schedule A"),
+				CorridorPool.location("schedule B"), 100);
+		other = CorridorPool.corridor(CorridorPool.location("schedule C"),
+				CorridorPool.location("schedule D"), 100);
+		Traffic firstTraffic = new Traffic();
+		firstTraffic.updateTraffic(shared, 30);
+		first = new Venue("first", 100, firstTraffic);
+		Traffic secondTraffic = new Traffic();
+		secondTraffic.updateTraffic(shared, 40);
+		secondTraffic.updateTraffic(other, 10);
+		second = new Venue("second", 100, secondTraffic);
+		schedule = new Schedule();
+	}
+
+	@Test
+	public void peakTrafficOfOverlappingEvents() {
+		schedule.add(event("a", 0, 10), first);
+		schedule.add(event("b", 5, 15), second);
+		assertEquals(70, schedule.getPeakTraffic(shared, 0, 20));
+		assertEquals(70, schedule.getPeakTraffic(shared, 9, 10));
+		assertEquals(30, schedule.getPeakTraffic(shared, 0, 5));
+		assertEquals(40, schedule.getPeakTraffic(shared, 10, 15));
+		assertEquals(0, schedule.getPeakTraffic(shared, 15, 20));
+		assertEquals(10, schedule.getPeakTraffic(other, 0, 20));
+		assertTrue(schedule.isSafe());
+	}
+
+	@Test
+	public void peakTrafficOfNonOverlappingEvents() {
+		schedule.add(event("a", 0, 10), first);
+		schedule.add(event("b", 10, 20), second);
+		assertEquals(40, schedule.getPeakTraffic(shared, 0, 20));
+		assertEquals(30, schedule.getPeakTraffic(shared, 0, 10));
+		assertEquals(40, schedule.getPeakTraffic(shared, 10, 20));
+		assertEquals(0, schedule.getPeakTraffic(other, 0, 10));
+	}
+
+	@Test
+	public void peakTrafficAfterRemove() {
+		ScheduledEvent a = event("a", 0, 10);
+		schedule.add(a, first);
+		schedule.add(event("b", 5, 15), second);
+		assertSame(first, schedule.remove(a));
+		assertEquals(40, schedule.getPeakTraffic(shared, 0, 20));
+		assertEquals(0, schedule.getPeakTraffic(shared, 0, 5));
+	}
+
+	@Test
+	public void peakTrafficOfCorridorNotInterned() {
+		schedule.add(event("a", 0, 10), first);
+		Corridor copy = new Corridor(CorridorPool.location("schedule A"),
+				CorridorPool.location("schedule B"), 100);
+		assertEquals(-1, copy.getId());
+		assertEquals(30, schedule.getPeakTraffic(copy, 0, 10));
+		Corridor unknown = new Corridor(CorridorPool.location("schedule E"),
+				CorridorPool.location("schedule F"), 100);
+		assertEquals(0, schedule.getPeakTraffic(unknown, 0, 10));
+		assertEquals(-1, CorridorPool.idOf(unknown));
+	}
+
+	@Test
+	public void overflowOnlyDuringOverlap() {
+		Traffic heavyTraffic = new Traffic();
+		heavyTraffic.updateTraffic(shared, 80);
+		Venue heavy = new Venue("heavy", 100, heavyTraffic);
+		schedule.add(event("a", 0, 10), first);
+		assertSame(shared, schedule.findOverflow(event("c", 5, 15), heavy));
+		assertNull(schedule.findOverflow(event("c", 10, 20), heavy));
+		assertTrue(schedule.canSchedule(event("c", 10, 20), heavy));
+		schedule.add(event("c", 5, 15), heavy);
+		assertFalse(schedule.isSafe());
+	}
+
+	/**
+	 * Returns an event of size 100 in the time slot [start, end).
+	 */
+	private static ScheduledEvent event(String name, long start, long end) {
+		return new ScheduledEvent(new Event(name, 100), start, end);
+	}
+}